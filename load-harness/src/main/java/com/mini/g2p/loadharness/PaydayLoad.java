@@ -0,0 +1,159 @@
+package com.mini.g2p.loadharness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Payday load run against locally running services (see compose/docker-compose.load.yml):
+ * creates a program, an approved cycle and `size` approved entitlements in program-catalog,
+ * builds the cycle's payment batch, dispatches it and waits until mockbank has answered every
+ * instruction and the batch is COMPLETED.
+ *
+ * Reports setup times, time until every instruction was published, time to COMPLETED,
+ * end-to-end and peak status throughput, and p50/p90/p99 dispatch-to-outcome latency (from
+ * payment-service's per-instruction sentAt/resolvedAt). The report is printed and written as JSON.
+ *
+ * Options (--name=value): catalog (http://localhost:8085), payments (http://localhost:8086),
+ * size (1000), amount (150.000), currency (TND), poll-ms (1000), timeout-minutes (60),
+ * out (load-report-<epoch>.json).
+ */
+public final class PaydayLoad {
+
+  private final ServiceApi api;
+  private final String catalog, payments;
+  private final int size;
+  private final String amount, currency;
+  private final long pollMs;
+  private final Duration timeout;
+
+  private PaydayLoad(Map<String, String> opts) {
+    this.catalog = opts.getOrDefault("catalog", "http://localhost:8085");
+    this.payments = opts.getOrDefault("payments", "http://localhost:8086");
+    this.size = Integer.parseInt(opts.getOrDefault("size", "1000"));
+    this.amount = opts.getOrDefault("amount", "150.000");
+    this.currency = opts.getOrDefault("currency", "TND");
+    this.pollMs = Long.parseLong(opts.getOrDefault("poll-ms", "1000"));
+    this.timeout = Duration.ofMinutes(Long.parseLong(opts.getOrDefault("timeout-minutes", "60")));
+    this.api = new ServiceApi(Duration.ofMinutes(10)); // entitlement generation for big cycles is one long call
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, String> opts = new HashMap<>();
+    for (String a : args) {
+      if (!a.startsWith("--") || !a.contains("=")) {
+        System.err.println("usage: PaydayLoad [--catalog=url] [--payments=url] [--size=n] [--amount=150.000] [--currency=TND]"
+            + " [--poll-ms=1000] [--timeout-minutes=60] [--out=report.json]");
+        System.exit(2);
+      }
+      opts.put(a.substring(2, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+    }
+    var run = new PaydayLoad(opts);
+    var report = run.run();
+
+    var json = run.api.json().copy().enable(SerializationFeature.INDENT_OUTPUT);
+    var out = new File(opts.getOrDefault("out", "load-report-" + Instant.now().getEpochSecond() + ".json"));
+    json.writeValue(out, report);
+    System.out.println(json.writeValueAsString(report));
+    System.out.println("report written to " + out.getAbsolutePath());
+    if (!"COMPLETED".equals(report.get("batchStatus"))) System.exit(1);
+  }
+
+  private Map<String, Object> run() {
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("size", size);
+    report.put("startedAt", Instant.now().toString());
+    String tag = "payday-load-" + Instant.now().getEpochSecond();
+
+    // ---- setup through program-catalog ----
+    long t = System.nanoTime();
+    long programId = api.post(catalog + "/programs",
+        Map.of("name", tag, "description", "load harness run", "rulesJson", "{}")).path("id").asLong();
+    api.patch(catalog + "/programs/" + programId + "/state", Map.of("value", "ACTIVE"));
+    long cycleId = api.post(catalog + "/programs/" + programId + "/cycles",
+        Map.of("name", tag, "startDate", LocalDate.now().toString(), "endDate", LocalDate.now().plusMonths(1).toString()))
+        .path("id").asLong();
+    api.patch(catalog + "/cycles/" + cycleId + "/state", Map.of("value", "TO_APPROVE"));
+    api.patch(catalog + "/cycles/" + cycleId + "/state", Map.of("value", "APPROVED"));
+    report.put("programId", programId);
+    report.put("cycleId", cycleId);
+
+    // entitlements of an APPROVED cycle are created APPROVED
+    List<Map<String, Object>> items = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      items.add(Map.of("username", tag + "-citizen-" + i, "amount", amount, "currency", currency));
+    }
+    api.post(catalog + "/programs/" + programId + "/cycles/" + cycleId + "/entitlements/generate", Map.of("items", items));
+    report.put("entitlementsMs", millisSince(t));
+
+    t = System.nanoTime();
+    var batch = api.post(payments + "/payments/batches/from-cycle?cycleId=" + cycleId + "&programId=" + programId, null);
+    long batchId = batch.path("batchId").asLong();
+    report.put("batchId", batchId);
+    report.put("batchCreateMs", millisSince(t));
+
+    // ---- dispatch and wait for the bank ----
+    long t0 = System.nanoTime();
+    var job = api.post(payments + "/payments/batches/" + batchId + "/dispatch", null);
+    String jobId = job.path("jobId").asText();
+    report.put("dispatchAcceptMs", millisSince(t0));
+
+    Long publishedMs = null, firstStatusMs = null;
+    long lastResolved = 0, lastPoll = t0;
+    double peak = 0;
+    String status = "PROCESSING";
+    long deadline = t0 + timeout.toNanos();
+    while (System.nanoTime() < deadline) {
+      sleep(pollMs);
+      long now = System.nanoTime();
+      if (publishedMs == null && !jobId.isEmpty()) {
+        JsonNode j = api.get(payments + "/payments/dispatch-jobs/" + jobId);
+        if ("DONE".equals(j.path("state").asText())) publishedMs = (now - t0) / 1_000_000;
+      }
+      JsonNode s = api.get(payments + "/payments/batches/" + batchId + "/summary");
+      long resolved = s.path("successCount").asLong() + s.path("failedCount").asLong();
+      if (firstStatusMs == null && resolved > 0) firstStatusMs = (now - t0) / 1_000_000;
+      peak = Math.max(peak, (resolved - lastResolved) * 1e9 / (now - lastPoll));
+      lastResolved = resolved;
+      lastPoll = now;
+      status = s.path("status").asText();
+      System.out.printf("t+%6.1fs resolved %d/%d (%s)%n", (now - t0) / 1e9, resolved, size, status);
+      if ("COMPLETED".equals(status)) break;
+    }
+    long elapsedMs = millisSince(t0);
+
+    report.put("batchStatus", status);
+    report.put("allPublishedMs", publishedMs);
+    report.put("firstStatusMs", firstStatusMs);
+    report.put("timeToCompletedMs", "COMPLETED".equals(status) ? elapsedMs : null);
+    report.put("resolved", lastResolved);
+    report.put("throughputPerSec", elapsedMs == 0 ? 0 : round(lastResolved * 1000.0 / elapsedMs));
+    report.put("peakThroughputPerSec", round(peak));
+
+    JsonNode latency = api.get(payments + "/payments/batches/" + batchId + "/latency");
+    Map<String, Object> lat = new LinkedHashMap<>();
+    for (String k : List.of("p50Ms", "p90Ms", "p99Ms", "maxMs")) lat.put(k, latency.path(k).isNull() ? null : latency.path(k).asLong());
+    report.put("latency", lat);
+    report.put("finishedAt", Instant.now().toString());
+    return report;
+  }
+
+  private static long millisSince(long nanos) { return (System.nanoTime() - nanos) / 1_000_000; }
+
+  private static double round(double v) { return Math.round(v * 10) / 10.0; }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted", e);
+    }
+  }
+}
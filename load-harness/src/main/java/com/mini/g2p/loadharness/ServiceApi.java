@@ -0,0 +1,63 @@
+package com.mini.g2p.loadharness;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Thin JSON-over-HTTP client for the services' public endpoints. Calls go straight to the
+ * service ports (no gateway), so admin-only payment endpoints get the X-Auth-Roles header the
+ * gateway would otherwise add.
+ */
+final class ServiceApi {
+
+  static final class CallFailed extends RuntimeException {
+    CallFailed(String message) { super(message); }
+  }
+
+  private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+  private final ObjectMapper json = new ObjectMapper();
+  private final Duration requestTimeout;
+
+  ServiceApi(Duration requestTimeout) { this.requestTimeout = requestTimeout; }
+
+  ObjectMapper json() { return json; }
+
+  JsonNode get(String url) { return send("GET", url, null); }
+
+  JsonNode post(String url, Object body) { return send("POST", url, body); }
+
+  JsonNode patch(String url, Object body) { return send("PATCH", url, body); }
+
+  private JsonNode send(String method, String url, Object body) {
+    try {
+      var req = HttpRequest.newBuilder(URI.create(url))
+          .timeout(requestTimeout)
+          .header("Accept", "application/json")
+          .header("X-Auth-Roles", "ADMIN")
+          .header("X-Auth-User", "load-harness");
+      if (body == null) {
+        req.method(method, HttpRequest.BodyPublishers.noBody());
+      } else {
+        req.header("Content-Type", "application/json")
+            .method(method, HttpRequest.BodyPublishers.ofByteArray(json.writeValueAsBytes(body)));
+      }
+      var res = http.send(req.build(), HttpResponse.BodyHandlers.ofString());
+      if (res.statusCode() / 100 != 2) {
+        throw new CallFailed(method + " " + url + " -> " + res.statusCode() + " " + res.body());
+      }
+      return res.body().isBlank() ? json.nullNode() : json.readTree(res.body());
+    } catch (IOException e) {
+      throw new CallFailed(method + " " + url + " failed: " + e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new CallFailed(method + " " + url + " interrupted");
+    }
+  }
+}
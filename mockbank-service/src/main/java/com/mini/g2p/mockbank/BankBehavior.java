@@ -0,0 +1,13 @@
+package com.mini.g2p.mockbank;
+
+/**
+ * Decides how the simulated bank answers one instruction. The listener only schedules the
+ * reply; any bean implementing this replaces the configured model.
+ */
+public interface BankBehavior {
+
+  /** reason is null on success. */
+  record Outcome(long delayMs, boolean success, String reason, String bankRef) {}
+
+  Outcome decide(MockBankListener.PaymentInstructionMsg in);
+}
@@ -0,0 +1,60 @@
+package com.mini.g2p.mockbank;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * How the simulated bank answers: app.mockbank.latency.* (reply delay), app.mockbank.failures
+ * (probability per fail reason; the rest succeeds), app.mockbank.seed (same seed = same outcome
+ * and delay for a given instruction id, whatever the thread interleaving), app.mockbank.scenarios
+ * (scripted misbehaviour on top, see ScenarioEngine).
+ * Defaults reproduce the original mock: 3-5 s uniform delay, half of the payments failing.
+ */
+@ConfigurationProperties(prefix = "app.mockbank")
+public class BankBehaviorProps {
+
+  public enum Distribution { FIXED, UNIFORM, EXPONENTIAL, LOGNORMAL }
+
+  public static class Latency {
+    private Distribution distribution = Distribution.UNIFORM;
+    private long minMs = 3000;   // UNIFORM lower bound
+    private long maxMs = 5000;   // UNIFORM upper bound, cap for EXPONENTIAL / LOGNORMAL
+    private long meanMs = 4000;  // FIXED value, EXPONENTIAL mean, LOGNORMAL median
+    private double sigma = 0.5;  // LOGNORMAL shape
+    public Distribution getDistribution(){return distribution;} public void setDistribution(Distribution v){this.distribution=v;}
+    public long getMinMs(){return minMs;} public void setMinMs(long v){this.minMs=v;}
+    public long getMaxMs(){return maxMs;} public void setMaxMs(long v){this.maxMs=v;}
+    public long getMeanMs(){return meanMs;} public void setMeanMs(long v){this.meanMs=v;}
+    public double getSigma(){return sigma;} public void setSigma(double v){this.sigma=v;}
+  }
+
+  /** Scenario file (JSON, name -> Scenario); classpath scenarios.json when empty. */
+  public static class Scenarios {
+    private String file = "";
+    private String active = "";  // scenario activated at startup
+    public String getFile(){return file;} public void setFile(String v){this.file=v;}
+    public String getActive(){return active;} public void setActive(String v){this.active=v;}
+  }
+
+  private Latency latency = new Latency();
+  private Scenarios scenarios = new Scenarios();
+  private Map<String, Double> failures = new LinkedHashMap<>(Map.of("INSUFFICIENT_FUNDS", 0.5));
+  private Long seed;
+  private int maxInFlight = 100_000;
+  private int replyThreads = 2;
+  private int replyBulkSize = 200;   // statuses per bulk reply, when instructions arrive in bulk
+  private long replyFlushMs = 50;    // how long a bulk reply collects statuses
+  private int idempotencyKeys = 200_000; // instruction ids remembered to answer re-dispatches with the first outcome
+
+  public Latency getLatency(){return latency;} public void setLatency(Latency v){this.latency=v;}
+  public Scenarios getScenarios(){return scenarios;} public void setScenarios(Scenarios v){this.scenarios=v;}
+  public Map<String, Double> getFailures(){return failures;} public void setFailures(Map<String, Double> v){this.failures=v;}
+  public Long getSeed(){return seed;} public void setSeed(Long v){this.seed=v;}
+  public int getMaxInFlight(){return maxInFlight;} public void setMaxInFlight(int v){this.maxInFlight=v;}
+  public int getReplyThreads(){return replyThreads;} public void setReplyThreads(int v){this.replyThreads=v;}
+  public int getReplyBulkSize(){return replyBulkSize;} public void setReplyBulkSize(int v){this.replyBulkSize=v;}
+  public long getReplyFlushMs(){return replyFlushMs;} public void setReplyFlushMs(long v){this.replyFlushMs=v;}
+  public int getIdempotencyKeys(){return idempotencyKeys;} public void setIdempotencyKeys(int v){this.idempotencyKeys=v;}
+}
@@ -0,0 +1,50 @@
+package com.mini.g2p.mockbank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Must match payment-service's BulkEnvelope: a gzip-compressed JSON array of message records,
+ * flagged by the x-g2p-bulk header (element count); messages without it carry one record.
+ */
+public final class BulkEnvelope {
+
+  public static final String H_BULK = "x-g2p-bulk";
+  public static final String ENCODING = "gzip";
+
+  private BulkEnvelope() {}
+
+  public static boolean isBulk(Message m) {
+    return m.getMessageProperties().getHeader(H_BULK) != null;
+  }
+
+  public static Message encode(ObjectMapper mapper, List<?> items) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + items.size() * 48);
+    try (GZIPOutputStream gz = new GZIPOutputStream(bytes)) {
+      mapper.writeValue(gz, items);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    MessageProperties props = new MessageProperties();
+    props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+    props.setContentEncoding(ENCODING);
+    props.setHeader(H_BULK, items.size());
+    return new Message(bytes.toByteArray(), props);
+  }
+
+  public static <T> List<T> decode(ObjectMapper mapper, Message m, Class<T> type) throws IOException {
+    if (!isBulk(m)) return List.of(mapper.readValue(m.getBody(), type));
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(m.getBody()))) {
+      return mapper.readValue(in, mapper.getTypeFactory().constructCollectionType(List.class, type));
+    }
+  }
+}
@@ -0,0 +1,62 @@
+package com.mini.g2p.mockbank;
+
+import org.springframework.stereotype.Component;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * BankBehavior driven by BankBehaviorProps. With a seed, each instruction draws from its own
+ * generator seeded by (seed, instructionId), so a rerun gives every instruction the same delay,
+ * outcome and bank reference even though replies are produced concurrently.
+ */
+@Component
+public class ConfiguredBankBehavior implements BankBehavior {
+
+  private final BankBehaviorProps props;
+
+  public ConfiguredBankBehavior(BankBehaviorProps props) {
+    this.props = props;
+    double total = props.getFailures().values().stream().mapToDouble(Double::doubleValue).sum();
+    if (total > 1.0 + 1e-9) throw new IllegalArgumentException("app.mockbank.failures add up to " + total + " (> 1)");
+  }
+
+  @Override
+  public Outcome decide(MockBankListener.PaymentInstructionMsg in) {
+    var rnd = random(in.instructionId());
+    long delay = delay(props.getLatency(), rnd);
+
+    String reason = null;
+    double u = rnd.nextDouble(), acc = 0;
+    for (var e : props.getFailures().entrySet()) {
+      acc += e.getValue();
+      if (u < acc) { reason = e.getKey(); break; }
+    }
+    return new Outcome(delay, reason == null, reason, "BANK-" + rnd.nextInt(1_000_000_000));
+  }
+
+  private SplittableRandom random(Long instructionId) {
+    return random(props.getSeed(), instructionId);
+  }
+
+  static SplittableRandom random(Long seed, Long instructionId) {
+    if (seed == null) return new SplittableRandom(ThreadLocalRandom.current().nextLong());
+    // mix so neighbouring ids do not get correlated streams
+    return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + (instructionId == null ? 0 : instructionId)).split();
+  }
+
+  static long delay(BankBehaviorProps.Latency l, SplittableRandom rnd) {
+    return switch (l.getDistribution()) {
+      case FIXED -> l.getMeanMs();
+      case UNIFORM -> l.getMaxMs() > l.getMinMs() ? rnd.nextLong(l.getMinMs(), l.getMaxMs()) : l.getMinMs();
+      case EXPONENTIAL -> Math.min(l.getMaxMs(), Math.round(-l.getMeanMs() * Math.log(1 - rnd.nextDouble())));
+      case LOGNORMAL -> Math.min(l.getMaxMs(), Math.round(l.getMeanMs() * Math.exp(l.getSigma() * gaussian(rnd))));
+    };
+  }
+
+  // Box-Muller; SplittableRandom has no nextGaussian
+  private static double gaussian(SplittableRandom rnd) {
+    double u1 = 1 - rnd.nextDouble(), u2 = rnd.nextDouble();
+    return Math.sqrt(-2 * Math.log(u1)) * Math.cos(2 * Math.PI * u2);
+  }
+}
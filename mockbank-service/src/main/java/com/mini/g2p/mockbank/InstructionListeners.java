@@ -0,0 +1,59 @@
+package com.mini.g2p.mockbank;
+
+import org.springframework.amqp.ImmediateRequeueAmqpException;
+import org.springframework.amqp.rabbit.annotation.RabbitListenerConfigurer;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerEndpoint;
+import org.springframework.amqp.rabbit.listener.RabbitListenerEndpointRegistrar;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One listener container per instruction queue, all in the LISTENER_GROUP container group.
+ * Shard queues are single-active-consumer, so a container consuming every shard would get all
+ * of them on one consumer while the others stand by; a container per shard with one consumer
+ * each lets the shards run in parallel and keeps each one in order. The unsharded legacy queue
+ * gets app.mockbank.concurrency consumers.
+ */
+@Configuration
+public class InstructionListeners implements RabbitListenerConfigurer {
+
+  public static final String LISTENER_GROUP = "mockbank-instructions";
+
+  private final MockBankListener listener;
+  private final InstructionShards shards;
+  private final SimpleRabbitListenerContainerFactory factory;
+  private final int legacyConcurrency;
+
+  public InstructionListeners(MockBankListener listener, InstructionShards shards,
+                              SimpleRabbitListenerContainerFactory factory,
+                              @Value("${app.mockbank.concurrency:1}") int legacyConcurrency) {
+    this.listener = listener; this.shards = shards; this.factory = factory;
+    this.legacyConcurrency = Math.max(1, legacyConcurrency);
+  }
+
+  @Override
+  public void configureRabbitListeners(RabbitListenerEndpointRegistrar registrar) {
+    registrar.registerEndpoint(endpoint(RabbitConfig.Q_INSTR, legacyConcurrency), factory);
+    if (shards.count() > 1) for (int i = 0; i < shards.count(); i++) {
+      registrar.registerEndpoint(endpoint(InstructionShards.queue(i), 1), factory);
+    }
+  }
+
+  private SimpleRabbitListenerEndpoint endpoint(String queue, int concurrency) {
+    var e = new SimpleRabbitListenerEndpoint();
+    e.setId(LISTENER_GROUP + "-" + queue);
+    e.setGroup(LISTENER_GROUP);
+    e.setQueueNames(queue);
+    e.setConcurrency(String.valueOf(concurrency));
+    e.setMessageListener(m -> {
+      try {
+        listener.onInstruction(m);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new ImmediateRequeueAmqpException("mockbank stopping", ex); // back to the queue, not the parking lot
+      }
+    });
+    return e;
+  }
+}
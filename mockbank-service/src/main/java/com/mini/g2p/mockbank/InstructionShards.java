@@ -0,0 +1,54 @@
+package com.mini.g2p.mockbank;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Routes instruction messages to N shard queues by beneficiary, using a jump consistent
+ * hash so that growing N only moves ~1/N of the beneficiaries. Every message of a given
+ * beneficiary lands on the same single-active-consumer queue, which keeps them in order.
+ * With one shard the legacy q.payment.instructions / payment.instruction pair is used.
+ * payment-service carries the same class; both must run with the same shard count.
+ */
+@Component
+public class InstructionShards {
+
+  private final int shards;
+
+  public InstructionShards(@Value("${app.payments.instruction-shards:1}") int shards) {
+    this.shards = Math.max(1, shards);
+  }
+
+  public int count() { return shards; }
+
+  public String routingKey(String beneficiary) {
+    return shards == 1 ? RabbitConfig.RK_INSTR : routingKey(shardOf(beneficiary, shards));
+  }
+
+  public static String routingKey(int shard) { return RabbitConfig.RK_INSTR + "." + shard; }
+
+  public static String queue(int shard) { return RabbitConfig.Q_INSTR + "." + shard; }
+
+  public static int shardOf(String key, int buckets) {
+    return jump(fnv1a(key == null ? "" : key), buckets);
+  }
+
+  // Lamping & Veach, "A Fast, Minimal Memory, Consistent Hash Algorithm"
+  static int jump(long key, int buckets) {
+    long b = -1, j = 0;
+    while (j < buckets) {
+      b = j;
+      key = key * 2862933555777941757L + 1;
+      j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+    }
+    return (int) b;
+  }
+
+  static long fnv1a(String s) {
+    long h = 0xcbf29ce484222325L;
+    for (byte x : s.getBytes(StandardCharsets.UTF_8)) { h ^= (x & 0xff); h *= 0x100000001b3L; }
+    return h;
+  }
+}
@@ -1,39 +1,187 @@
 package com.mini.g2p.mockbank;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
 import org.springframework.amqp.core.AmqpTemplate;
-import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.core.Message;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.math.BigDecimal;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Consumes instructions and answers each after the delay BankBehavior picks. Replies are
+ * scheduled, not slept on the consumer thread, so throughput no longer depends on latency:
+ * consumers only decode and schedule. At most max-in-flight replies wait at once; beyond that
+ * consumers block, and the broker holds the rest (prefetch) until replies drain.
+ *
+ * Instructions may arrive one per message or as a BulkEnvelope. The reply format follows the
+ * request: statuses of bulk instructions are collected for reply-flush-ms and sent back as bulk
+ * messages of up to reply-bulk-size, the others one message each.
+ *
+ * An active Scenario (ScenarioEngine) may reshape outcomes and delays, swallow or duplicate
+ * replies and cap the reply rate.
+ *
+ * The instruction id is the idempotency key. Like a real bank, mockbank answers an instruction
+ * it has already taken (a reconciliation re-dispatch, dispatchAttempt > 1, or a broker
+ * redelivery) with its first outcome and bank reference instead of paying again; the last
+ * idempotency-keys instruction ids are remembered.
+ *
+ * The instruction is acked once its reply is scheduled; replies pending when mockbank stops are
+ * lost, like a bank that never answers, and payment-service reconciliation re-dispatches them.
+ */
 @Component
 public class MockBankListener {
   private final AmqpTemplate amqp;
-  public MockBankListener(AmqpTemplate amqp){ this.amqp = amqp; }
+  private final BankBehavior behavior;
+  private final ScenarioEngine scenarios;
+  private final ObjectMapper mapper;
+  private final MeterRegistry meters;
+  private final Semaphore inFlight;
+  private final ScheduledExecutorService replies;
+  private final Queue<PaymentStatusMsg> bulkReplies = new ConcurrentLinkedQueue<>();
+  private final int replyBulkSize;
+  private final Map<Long, BankBehavior.Outcome> taken;
+
+  public MockBankListener(AmqpTemplate amqp, BankBehavior behavior, ScenarioEngine scenarios, ObjectMapper mapper,
+                          BankBehaviorProps props, MeterRegistry meters) {
+    this.amqp = amqp; this.behavior = behavior; this.scenarios = scenarios; this.mapper = mapper; this.meters = meters;
+    this.inFlight = new Semaphore(Math.max(1, props.getMaxInFlight()));
+    this.replies = Executors.newScheduledThreadPool(Math.max(1, props.getReplyThreads()));
+    this.replyBulkSize = Math.max(1, props.getReplyBulkSize());
+    int keys = Math.max(1, props.getIdempotencyKeys());
+    this.taken = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, false) {
+      @Override protected boolean removeEldestEntry(Map.Entry<Long, BankBehavior.Outcome> eldest) { return size() > keys; }
+    });
+    long flushMs = Math.max(1, props.getReplyFlushMs());
+    replies.scheduleWithFixedDelay(this::flushBulkReplies, flushMs, flushMs, TimeUnit.MILLISECONDS);
+    int max = Math.max(1, props.getMaxInFlight());
+    Gauge.builder("mockbank.replies.pending", inFlight, s -> max - s.availablePermits())
+        .description("instructions waiting for their simulated bank reply").register(meters);
+  }
 
   public record PaymentInstructionMsg(
       Long instructionId,
       Long programId,
       String username,
       BigDecimal amount,
-      String currency
+      String currency,
+      Long amountMinor,
+      Integer dispatchAttempt
   ) {}
 
-  @RabbitListener(queues = RabbitConfig.Q_INSTR)
-  public void onInstruction(PaymentInstructionMsg in) throws InterruptedException {
+  /** Listener of every instruction queue; containers are registered by InstructionListeners. */
+  public void onInstruction(Message raw) throws InterruptedException {
+    List<PaymentInstructionMsg> batch;
+    try {
+      batch = BulkEnvelope.decode(mapper, raw, PaymentInstructionMsg.class);
+    } catch (IOException e) {
+      throw new AmqpRejectAndDontRequeueException("unreadable instruction message: " + e.getMessage(), e);
+    }
+    boolean bulk = BulkEnvelope.isBulk(raw);
+    for (var in : batch) {
+      var plan = scenarios.plan(in, decideOnce(in));
+      if (plan.outcome() == null) continue; // swallowed by the scenario: never answered
+      inFlight.acquire();
+      try {
+        replies.schedule(() -> reply(in, plan, bulk), plan.outcome().delayMs(), TimeUnit.MILLISECONDS);
+      } catch (RuntimeException e) {
+        inFlight.release();
+        throw e;
+      }
+    }
+  }
+
+  private BankBehavior.Outcome decideOnce(PaymentInstructionMsg in) {
+    if (in.instructionId() == null) return behavior.decide(in);
+    boolean[] fresh = { false };
+    var outcome = taken.computeIfAbsent(in.instructionId(), id -> { fresh[0] = true; return behavior.decide(in); });
+    if (!fresh[0]) meters.counter("mockbank.instructions.replayed").increment();
+    return outcome;
+  }
+
+  private void reply(PaymentInstructionMsg in, ScenarioEngine.Plan plan, boolean bulk) {
+    long wait = scenarios.replySlotDelayMs();
+    if (wait > 0) {
+      try {
+        replies.schedule(() -> send(in, plan, bulk), wait, TimeUnit.MILLISECONDS);
+        return;
+      } catch (RuntimeException e) {
+        // scheduler shut down: send now, like any pending reply would have been
+      }
+    }
+    send(in, plan, bulk);
+  }
+
+  private void send(PaymentInstructionMsg in, ScenarioEngine.Plan plan, boolean bulk) {
+    var outcome = plan.outcome();
+    try {
+      var statusMsg = new PaymentStatusMsg(
+          in.instructionId(),
+          outcome.success() ? "SUCCESS" : "FAILED",
+          outcome.bankRef(),
+          outcome.reason()
+      );
+      publish(statusMsg, bulk);
+      if (plan.duplicate()) {
+        if (plan.duplicateDelayMs() > 0) {
+          replies.schedule(() -> publish(statusMsg, bulk), plan.duplicateDelayMs(), TimeUnit.MILLISECONDS);
+        } else {
+          publish(statusMsg, bulk);
+        }
+      }
+      meters.counter("mockbank.replies", "status", statusMsg.status(), "reason", outcome.success() ? "none" : outcome.reason())
+          .increment();
+    } catch (Exception e) {
+      System.err.println("mockbank reply for instruction " + in.instructionId() + " failed: " + e.getMessage());
+    } finally {
+      inFlight.release();
+    }
+  }
 
-    Thread.sleep(ThreadLocalRandom.current().nextInt(3000, 5000));
+  private void publish(PaymentStatusMsg statusMsg, boolean bulk) {
+    try {
+      if (bulk) bulkReplies.add(statusMsg);
+      else amqp.convertAndSend(RabbitConfig.EXCHANGE, RabbitConfig.RK_STATUS, statusMsg);
+    } catch (Exception e) {
+      System.err.println("mockbank reply for instruction " + statusMsg.instructionId() + " failed: " + e.getMessage());
+    }
+  }
 
-    boolean ok = ThreadLocalRandom.current().nextDouble() < 0.50;
+  private void flushBulkReplies() {
+    List<PaymentStatusMsg> out = new ArrayList<>(replyBulkSize);
+    PaymentStatusMsg next;
+    while ((next = bulkReplies.poll()) != null) {
+      out.add(next);
+      if (out.size() == replyBulkSize) { sendBulk(out); out = new ArrayList<>(replyBulkSize); }
+    }
+    if (!out.isEmpty()) sendBulk(out);
+  }
 
-    var statusMsg = new PaymentStatusMsg(
-        in.instructionId(),
-        ok ? "SUCCESS" : "FAILED",
-        "BANK-" + ThreadLocalRandom.current().nextInt(1_000_000),
-        ok ? null : "INSUFFICIENT_FUNDS" 
-    );
+  private void sendBulk(List<PaymentStatusMsg> statuses) {
+    try {
+      amqp.send(RabbitConfig.EXCHANGE, RabbitConfig.RK_STATUS, BulkEnvelope.encode(mapper, statuses));
+    } catch (Exception e) {
+      System.err.println("mockbank bulk reply of " + statuses.size() + " statuses failed: " + e.getMessage());
+    }
+  }
 
-    amqp.convertAndSend(RabbitConfig.EXCHANGE, RabbitConfig.RK_STATUS, statusMsg);
+  @PreDestroy
+  void stop() {
+    replies.shutdown();
   }
 }
@@ -3,9 +3,11 @@ package com.mini.g2p.mockbank;
 import org.springframework.amqp.rabbit.annotation.EnableRabbit;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 
 @SpringBootApplication
 @EnableRabbit
+@EnableConfigurationProperties(BankBehaviorProps.class)
 public class MockBankServiceApplication {
   public static void main(String[] args) {
     SpringApplication.run(MockBankServiceApplication.class, args);
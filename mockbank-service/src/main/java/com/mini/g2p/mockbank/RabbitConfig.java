@@ -7,6 +7,10 @@ import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
 @Configuration
 public class RabbitConfig {
 
@@ -15,20 +19,45 @@ public class RabbitConfig {
   public static final String RK_STATUS = "payment.status";
   public static final String Q_INSTR = "q.payment.instructions"; 
   public static final String Q_STATUS = "q.payment.status";
+  // Must match payment-service: queue arguments are part of the declaration
+  // (queues declared before dead-lettering must be recreated once, see README "Mise à niveau")
+  public static final String DLX = "g2p.payments.dlx";
+  public static final String DLK_INSTR = "instructions";
+  public static final String DLK_STATUS = "status";
+  public static final String Q_INSTR_PARKING = "q.payment.instructions.parking";
+  public static final String Q_STATUS_PARKING = "q.payment.status.parking";
 
   @Bean
   public TopicExchange paymentsExchange() {
     return new TopicExchange(EXCHANGE, true, false);
   }
 
+  @Bean
+  public DirectExchange deadLetterExchange() {
+    return new DirectExchange(DLX, true, false);
+  }
+
+  static QueueBuilder instructionQueueBuilder(String name) {
+    return QueueBuilder.durable(name).deadLetterExchange(DLX).deadLetterRoutingKey(DLK_INSTR);
+  }
+
   @Bean
   public Queue instructionQueue() {
-    return new Queue(Q_INSTR, true);
+    return instructionQueueBuilder(Q_INSTR).build();
   }
 
   @Bean
   public Queue statusQueue() {
-    return new Queue(Q_STATUS, true);
+    return QueueBuilder.durable(Q_STATUS).deadLetterExchange(DLX).deadLetterRoutingKey(DLK_STATUS).build();
+  }
+
+  @Bean
+  public Declarables parkingQueues(DirectExchange deadLetterExchange) {
+    Queue instr = QueueBuilder.durable(Q_INSTR_PARKING).build();
+    Queue status = QueueBuilder.durable(Q_STATUS_PARKING).build();
+    return new Declarables(instr, status,
+        BindingBuilder.bind(instr).to(deadLetterExchange).with(DLK_INSTR),
+        BindingBuilder.bind(status).to(deadLetterExchange).with(DLK_STATUS));
   }
 
   @Bean
@@ -41,6 +70,18 @@ public class RabbitConfig {
     return BindingBuilder.bind(statusQueue).to(paymentsExchange).with(RK_STATUS);
   }
 
+  // Same shard topology as payment-service (see InstructionShards)
+  @Bean
+  public Declarables instructionShardQueues(InstructionShards shards, TopicExchange paymentsExchange) {
+    List<Declarable> out = new ArrayList<>();
+    if (shards.count() > 1) for (int i = 0; i < shards.count(); i++) {
+      Queue q = instructionQueueBuilder(InstructionShards.queue(i)).singleActiveConsumer().build();
+      out.add(q);
+      out.add(BindingBuilder.bind(q).to(paymentsExchange).with(InstructionShards.routingKey(i)));
+    }
+    return new Declarables(out);
+  }
+
   @Bean
   public Jackson2JsonMessageConverter jackson2JsonMessageConverter() {
     return new Jackson2JsonMessageConverter();
@@ -50,6 +91,8 @@ public class RabbitConfig {
   public RabbitTemplate rabbitTemplate(ConnectionFactory cf, Jackson2JsonMessageConverter converter) {
     RabbitTemplate tpl = new RabbitTemplate(cf);
     tpl.setMessageConverter(converter);
+    // payment-service measures status ack latency from this timestamp
+    tpl.setBeforePublishPostProcessors(m -> { m.getMessageProperties().setTimestamp(new Date()); return m; });
     return tpl;
   }
 }
@@ -0,0 +1,49 @@
+package com.mini.g2p.mockbank;
+
+import java.util.List;
+
+/**
+ * A scripted bank misbehaviour: phases played one after the other from activation (then again
+ * from the first one when loop is set). A phase with durationMs 0 lasts until the scenario is
+ * switched; only the last phase may have it. Unset fields leave BankBehavior's answer alone.
+ */
+public record Scenario(String description, boolean loop, List<Phase> phases) {
+
+  public enum Outage {
+    NONE,
+    DOWN,       // listener stopped: instructions pile up in the broker until the phase ends
+    BLACKHOLE   // instructions consumed and never answered
+  }
+
+  public record Phase(
+      String name,
+      long durationMs,
+      Outage outage,
+      long extraDelayMs,          // added to every reply delay
+      long jitterMs,              // random extra delay in [0, jitterMs): statuses come back out of order
+      boolean holdReplies,        // nothing answered before the phase ends, then everything at once
+      Double failRate,            // replaces the configured failure mix
+      String failReason,
+      double rejectRate,          // refused right away (partial batch rejection)
+      String rejectReason,
+      double duplicateRate,       // status sent twice
+      long duplicateDelayMs,      // gap before the second copy
+      int maxRepliesPerSecond     // reply throughput cap; 0 = none
+  ) {
+    Outage outageOrNone() { return outage == null ? Outage.NONE : outage; }
+  }
+
+  void validate(String name) {
+    if (phases == null || phases.isEmpty()) throw new IllegalArgumentException("scenario " + name + " has no phases");
+    for (int i = 0; i < phases.size(); i++) {
+      var p = phases.get(i);
+      String where = "scenario " + name + " phase " + i + ": ";
+      if (p.durationMs() < 0) throw new IllegalArgumentException(where + "durationMs < 0");
+      if (p.durationMs() == 0 && (i < phases.size() - 1 || loop))
+        throw new IllegalArgumentException(where + "only the last phase of a non-looping scenario may be open-ended");
+      if (p.holdReplies() && p.durationMs() == 0) throw new IllegalArgumentException(where + "holdReplies needs a durationMs");
+      for (double r : new double[] { p.failRate() == null ? 0 : p.failRate(), p.rejectRate(), p.duplicateRate() })
+        if (r < 0 || r > 1) throw new IllegalArgumentException(where + "rates must be within [0, 1]");
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.mini.g2p.mockbank;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Runtime switch for ScenarioEngine. mockbank is not routed by the gateway; these endpoints are
+ * for local resilience runs only.
+ */
+@RestController
+@RequestMapping("/mockbank/scenarios")
+public class ScenarioController {
+
+  private final ScenarioEngine engine;
+
+  public ScenarioController(ScenarioEngine engine) { this.engine = engine; }
+
+  @GetMapping
+  public Map<String, Object> status() { return engine.status(); }
+
+  @GetMapping("/{name}")
+  public ResponseEntity<?> get(@PathVariable String name) {
+    var s = engine.scenarios().get(name);
+    return s == null ? ResponseEntity.status(404).body(Map.of("error", "unknown scenario " + name)) : ResponseEntity.ok(s);
+  }
+
+  /** Body: {"name": "..."}; restarts the scenario from its first phase if it is already active. */
+  @PutMapping("/active")
+  public ResponseEntity<?> activate(@RequestBody Map<String, String> body) {
+    String name = body.get("name");
+    if (name == null || name.isBlank()) return ResponseEntity.badRequest().body(Map.of("error", "name required"));
+    try {
+      engine.activate(name);
+      return ResponseEntity.ok(engine.status());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.status(404).body(Map.of("error", e.getMessage()));
+    }
+  }
+
+  @DeleteMapping("/active")
+  public Map<String, Object> deactivate() {
+    engine.deactivate();
+    return engine.status();
+  }
+
+  @PostMapping("/reload")
+  public ResponseEntity<?> reload() {
+    try {
+      engine.reload();
+      return ResponseEntity.ok(engine.status());
+    } catch (Exception e) {
+      return ResponseEntity.badRequest().body(Map.of("error", "scenario file rejected: " + e.getMessage()));
+    }
+  }
+}
@@ -0,0 +1,208 @@
+package com.mini.g2p.mockbank;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Plays the active Scenario on top of BankBehavior. Scenarios are read from the scenario file
+ * (reloadable at runtime) and switched through ScenarioController; none is active by default,
+ * and then mockbank answers exactly as configured.
+ *
+ * The listener asks plan() per instruction (outcome, delay, swallow, duplicate) and
+ * replySlotDelayMs() per reply (throughput cap). DOWN phases stop every container of the
+ * instruction listener group from a 200 ms ticker and restart them when the phase is over.
+ */
+@Component
+public class ScenarioEngine {
+
+  /** How to answer one instruction; outcome is null when it is swallowed. */
+  public record Plan(BankBehavior.Outcome outcome, boolean duplicate, long duplicateDelayMs) {}
+
+  record Active(String name, Scenario scenario, long startedNanos) {}
+
+  record Position(Scenario.Phase phase, int index, long remainingMs) {}
+
+  private final ObjectMapper mapper;
+  private final BankBehaviorProps props;
+  private final ApplicationContext context;
+  private final MeterRegistry meters;
+  private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor();
+  private final AtomicLong nextReplySlot = new AtomicLong(System.nanoTime());
+
+  private volatile Map<String, Scenario> scenarios = Map.of();
+  private volatile Active active;
+  private boolean stoppedListener;
+
+  public ScenarioEngine(ObjectMapper mapper, BankBehaviorProps props, ApplicationContext context,
+                        MeterRegistry meters) {
+    this.mapper = mapper; this.props = props; this.context = context; this.meters = meters;
+    Gauge.builder("mockbank.scenario.phase", this, e -> { var p = e.position(); return p == null ? -1 : p.index(); })
+        .description("phase of the active scenario; -1 when none").register(meters);
+  }
+
+  @PostConstruct
+  void start() throws IOException {
+    reload();
+    String name = props.getScenarios().getActive();
+    if (name != null && !name.isBlank()) activate(name);
+    ticker.scheduleWithFixedDelay(this::tick, 200, 200, TimeUnit.MILLISECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    ticker.shutdown();
+  }
+
+  /** Re-reads the scenario file; an active scenario keeps its clock under its new definition. */
+  public synchronized Map<String, Scenario> reload() throws IOException {
+    String file = props.getScenarios().getFile();
+    var res = file == null || file.isBlank() ? new ClassPathResource("scenarios.json") : new FileSystemResource(file);
+    Map<String, Scenario> loaded;
+    try (var in = res.getInputStream()) {
+      loaded = mapper.readerFor(new TypeReference<LinkedHashMap<String, Scenario>>() {})
+          .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readValue(in);
+    }
+    loaded.forEach((n, s) -> s.validate(n));
+    scenarios = loaded;
+    var a = active;
+    if (a != null) active = loaded.containsKey(a.name()) ? new Active(a.name(), loaded.get(a.name()), a.startedNanos()) : null;
+    return loaded;
+  }
+
+  public synchronized Scenario activate(String name) {
+    var s = scenarios.get(name);
+    if (s == null) throw new IllegalArgumentException("unknown scenario " + name);
+    active = new Active(name, s, System.nanoTime());
+    System.err.println("mockbank scenario " + name + " activated");
+    return s;
+  }
+
+  public synchronized void deactivate() {
+    active = null;
+  }
+
+  public Map<String, Scenario> scenarios() { return scenarios; }
+
+  public Map<String, Object> status() {
+    Map<String, Object> out = new LinkedHashMap<>();
+    var a = active;
+    var p = position();
+    out.put("active", a == null ? null : a.name());
+    out.put("elapsedMs", a == null ? null : (System.nanoTime() - a.startedNanos()) / 1_000_000);
+    out.put("phase", p == null ? null : p.index());
+    out.put("phaseName", p == null ? null : p.phase().name());
+    out.put("phaseRemainingMs", p == null || p.remainingMs() == Long.MAX_VALUE ? null : p.remainingMs());
+    out.put("finished", a != null && p == null);
+    out.put("available", scenarios.keySet());
+    return out;
+  }
+
+  Position position() {
+    var a = active;
+    if (a == null) return null;
+    return position(a.scenario(), (System.nanoTime() - a.startedNanos()) / 1_000_000);
+  }
+
+  /** Where a scenario stands elapsedMs after activation; null once a non-looping one has played out. */
+  static Position position(Scenario s, long elapsedMs) {
+    var phases = s.phases();
+    long elapsed = elapsedMs;
+    if (s.loop()) elapsed %= phases.stream().mapToLong(Scenario.Phase::durationMs).sum();
+    for (int i = 0; i < phases.size(); i++) {
+      var ph = phases.get(i);
+      if (ph.durationMs() == 0) return new Position(ph, i, Long.MAX_VALUE);
+      if (elapsed < ph.durationMs()) return new Position(ph, i, ph.durationMs() - elapsed);
+      elapsed -= ph.durationMs();
+    }
+    return null; // played out: back to plain behaviour
+  }
+
+  public Plan plan(MockBankListener.PaymentInstructionMsg in, BankBehavior.Outcome base) {
+    var pos = position();
+    if (pos == null) return new Plan(base, false, 0);
+    var ph = pos.phase();
+    if (ph.outageOrNone() == Scenario.Outage.BLACKHOLE) {
+      effect("blackholed");
+      return new Plan(null, false, 0);
+    }
+    var rnd = ConfiguredBankBehavior.random(props.getSeed() == null ? null : props.getSeed() + pos.index() + 1,
+        in.instructionId());
+    if (rnd.nextDouble() < ph.rejectRate()) {
+      effect("rejected");
+      return new Plan(new BankBehavior.Outcome(0, false, orDefault(ph.rejectReason(), "BANK_REJECTED"), base.bankRef()),
+          false, 0);
+    }
+    boolean success = base.success();
+    String reason = base.reason();
+    if (ph.failRate() != null) {
+      success = rnd.nextDouble() >= ph.failRate();
+      reason = success ? null : orDefault(ph.failReason(), "INSUFFICIENT_FUNDS");
+    }
+    long delay = base.delayMs() + ph.extraDelayMs() + (ph.jitterMs() > 0 ? rnd.nextLong(ph.jitterMs()) : 0);
+    if (ph.holdReplies()) {
+      delay = Math.max(delay, pos.remainingMs());
+      effect("held");
+    }
+    boolean duplicate = rnd.nextDouble() < ph.duplicateRate();
+    if (duplicate) effect("duplicated");
+    return new Plan(new BankBehavior.Outcome(delay, success, reason, base.bankRef()), duplicate, ph.duplicateDelayMs());
+  }
+
+  /** How long a reply due now has to wait under the phase's throughput cap; reserves its slot. */
+  public long replySlotDelayMs() {
+    var pos = position();
+    int cap = pos == null ? 0 : pos.phase().maxRepliesPerSecond();
+    if (cap <= 0) return 0;
+    long interval = 1_000_000_000L / cap, now = System.nanoTime();
+    long slot = nextReplySlot.getAndUpdate(n -> Math.max(n, now) + interval);
+    long waitMs = (Math.max(slot, now) - now) / 1_000_000;
+    if (waitMs > 0) effect("throttled");
+    return waitMs;
+  }
+
+  synchronized void tick() {
+    try {
+      var pos = position();
+      boolean down = pos != null && pos.phase().outageOrNone() == Scenario.Outage.DOWN;
+      if (!context.containsBean(InstructionListeners.LISTENER_GROUP)) return;
+      @SuppressWarnings("unchecked")
+      var group = (List<MessageListenerContainer>) context.getBean(InstructionListeners.LISTENER_GROUP, List.class);
+      if (down && !stoppedListener) {
+        group.forEach(MessageListenerContainer::stop);
+        stoppedListener = true;
+        System.err.println("mockbank scenario outage: " + group.size() + " instruction listeners stopped");
+      } else if (!down && stoppedListener) {
+        group.forEach(MessageListenerContainer::start);
+        stoppedListener = false;
+        System.err.println("mockbank scenario outage over: " + group.size() + " instruction listeners restarted");
+      }
+    } catch (Exception e) {
+      System.err.println("mockbank scenario tick failed: " + e.getMessage());
+    }
+  }
+
+  private void effect(String name) {
+    meters.counter("mockbank.scenario.effects", "effect", name).increment();
+  }
+
+  private static String orDefault(String v, String def) { return v == null || v.isBlank() ? def : v; }
+}
@@ -0,0 +1,69 @@
+package com.mini.g2p.mockbank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkEnvelopeTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  @Test
+  void bulkRoundTrip() throws IOException {
+    var items = List.of(new PaymentStatusMsg(1L, "SUCCESS", "B1", null),
+        new PaymentStatusMsg(2L, "FAILED", "B2", "ACCOUNT_CLOSED"));
+    var m = BulkEnvelope.encode(mapper, items);
+
+    assertTrue(BulkEnvelope.isBulk(m));
+    assertEquals(2, (Integer) m.getMessageProperties().getHeader(BulkEnvelope.H_BULK));
+    assertEquals(BulkEnvelope.ENCODING, m.getMessageProperties().getContentEncoding());
+    assertEquals(items, BulkEnvelope.decode(mapper, m, PaymentStatusMsg.class));
+  }
+
+  @Test
+  void plainMessageDecodesToOneRecord() throws IOException {
+    var in = new MockBankListener.PaymentInstructionMsg(7L, 3L, "alice", new BigDecimal("10.00"), "XOF", 1000L, 2);
+    var m = new Message(mapper.writeValueAsBytes(in), new MessageProperties());
+
+    assertFalse(BulkEnvelope.isBulk(m));
+    assertEquals(List.of(in), BulkEnvelope.decode(mapper, m, MockBankListener.PaymentInstructionMsg.class));
+  }
+
+  @Test
+  void decodesTheWireFormatPaymentServiceWrites() throws IOException {
+    // gzip'd JSON array + x-g2p-bulk header, built by hand rather than through encode()
+    var json = "[{\"instructionId\":5,\"programId\":3,\"username\":\"bob\",\"amount\":1.5,"
+        + "\"currency\":\"XOF\",\"amountMinor\":150,\"dispatchAttempt\":1}]";
+    var bytes = new ByteArrayOutputStream();
+    try (var gz = new GZIPOutputStream(bytes)) { gz.write(json.getBytes(StandardCharsets.UTF_8)); }
+    var props = new MessageProperties();
+    props.setHeader(BulkEnvelope.H_BULK, 1);
+
+    var out = BulkEnvelope.decode(mapper, new Message(bytes.toByteArray(), props), MockBankListener.PaymentInstructionMsg.class);
+    assertEquals(1, out.size());
+    assertEquals(5L, out.get(0).instructionId());
+    assertEquals(150L, out.get(0).amountMinor());
+    assertEquals(1, out.get(0).dispatchAttempt());
+  }
+
+  @Test
+  void unreadablePayloadsFail() {
+    var notGzip = new MessageProperties();
+    notGzip.setHeader(BulkEnvelope.H_BULK, 2);
+    assertThrows(IOException.class, () ->
+        BulkEnvelope.decode(mapper, new Message("[{}]".getBytes(StandardCharsets.UTF_8), notGzip), PaymentStatusMsg.class));
+
+    var notJson = new Message("garbage".getBytes(StandardCharsets.UTF_8), new MessageProperties());
+    assertThrows(IOException.class, () -> BulkEnvelope.decode(mapper, notJson, PaymentStatusMsg.class));
+  }
+}
@@ -0,0 +1,60 @@
+package com.mini.g2p.mockbank;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Same table as payment-service's InstructionShardsTest: both services must pick the same shard. */
+class InstructionShardsTest {
+
+  // beneficiary, shard for 2 / 4 / 8 / 16 shards
+  private static final Object[][] KNOWN = {
+      { "", 1, 1, 1, 13 },
+      { "alice", 0, 3, 4, 4 },
+      { "bob", 0, 2, 2, 12 },
+      { "beneficiary-1", 0, 0, 7, 9 },
+      { "beneficiary-42", 1, 1, 1, 8 },
+      { "amadou.diallo", 1, 2, 2, 15 },
+      { "fatou.ndiaye", 0, 0, 0, 0 },
+      { "élodie", 1, 3, 3, 9 },
+  };
+
+  @Test
+  void knownBeneficiariesLandOnKnownShards() {
+    int[] counts = { 2, 4, 8, 16 };
+    for (var row : KNOWN) {
+      for (int i = 0; i < counts.length; i++) {
+        assertEquals((int) row[i + 1], InstructionShards.shardOf((String) row[0], counts[i]),
+            row[0] + " over " + counts[i] + " shards");
+      }
+    }
+  }
+
+  @Test
+  void fnv1aMatchesTheReferenceVectors() {
+    assertEquals(0xcbf29ce484222325L, InstructionShards.fnv1a(""));
+    assertEquals(0xaf63dc4c8601ec8cL, InstructionShards.fnv1a("a"));
+    assertEquals(0xa04f300f704c0956L, InstructionShards.fnv1a("élodie")); // hashed as UTF-8
+  }
+
+  @Test
+  void nullBeneficiaryHashesLikeEmpty() {
+    assertEquals(InstructionShards.shardOf("", 16), InstructionShards.shardOf(null, 16));
+  }
+
+  @Test
+  void addingAShardOnlyMovesBeneficiariesOntoIt() {
+    for (int k = 0; k < 10_000; k++) {
+      String b = "beneficiary-" + k;
+      int before = InstructionShards.shardOf(b, 4), after = InstructionShards.shardOf(b, 5);
+      assertTrue(after == before || after == 4, b + " moved " + before + " -> " + after);
+    }
+  }
+
+  @Test
+  void oneShardKeepsTheLegacyRoute() {
+    assertEquals(RabbitConfig.RK_INSTR, new InstructionShards(1).routingKey("alice"));
+    assertEquals(RabbitConfig.RK_INSTR + ".3", new InstructionShards(4).routingKey("alice"));
+    assertEquals(RabbitConfig.Q_INSTR + ".3", InstructionShards.queue(3));
+  }
+}
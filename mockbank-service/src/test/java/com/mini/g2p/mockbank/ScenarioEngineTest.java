@@ -0,0 +1,135 @@
+package com.mini.g2p.mockbank;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.rabbit.listener.MessageListenerContainer;
+import org.springframework.context.ApplicationContext;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class ScenarioEngineTest {
+
+  @TempDir Path dir;
+
+  private final BankBehaviorProps props = new BankBehaviorProps();
+  private final ApplicationContext context = mock(ApplicationContext.class);
+  private ScenarioEngine engine;
+
+  @BeforeEach
+  void setUp() {
+    engine = new ScenarioEngine(new ObjectMapper(), props, context, new SimpleMeterRegistry());
+  }
+
+  private static Scenario.Phase phase(String name, long durationMs) {
+    return new Scenario.Phase(name, durationMs, null, 0, 0, false, null, null, 0, null, 0, 0, 0);
+  }
+
+  private static void assertAt(Scenario s, long elapsedMs, int index, long remainingMs) {
+    var p = ScenarioEngine.position(s, elapsedMs);
+    assertNotNull(p, "no phase at " + elapsedMs + " ms");
+    assertEquals(index, p.index(), "phase at " + elapsedMs + " ms");
+    assertEquals(remainingMs, p.remainingMs(), "remaining at " + elapsedMs + " ms");
+  }
+
+  private void useFile(String json) throws Exception {
+    Path f = dir.resolve("scenarios.json");
+    Files.writeString(f, json);
+    props.getScenarios().setFile(f.toString());
+  }
+
+  @Test
+  void phasesStartExactlyWhenThePreviousOneEnds() {
+    var s = new Scenario("", false, List.of(phase("a", 1000), phase("b", 500), phase("c", 0)));
+    assertAt(s, 0, 0, 1000);
+    assertAt(s, 999, 0, 1);
+    assertAt(s, 1000, 1, 500);
+    assertAt(s, 1499, 1, 1);
+    assertAt(s, 1500, 2, Long.MAX_VALUE);
+    assertAt(s, 10_000_000, 2, Long.MAX_VALUE);
+  }
+
+  @Test
+  void finiteScenarioPlaysOut() {
+    var s = new Scenario("", false, List.of(phase("a", 1000), phase("b", 500)));
+    assertAt(s, 1499, 1, 1);
+    assertNull(ScenarioEngine.position(s, 1500));
+  }
+
+  @Test
+  void loopingScenarioStartsOverAfterItsLastPhase() {
+    var s = new Scenario("", true, List.of(phase("a", 1000), phase("b", 500)));
+    assertAt(s, 1500, 0, 1000);
+    assertAt(s, 2499, 0, 1);
+    assertAt(s, 2500, 1, 500);
+    assertAt(s, 1500L * 1_000_000 + 1200, 1, 300);
+  }
+
+  @Test
+  void shippedScenariosAreValid() throws Exception {
+    var loaded = engine.reload();
+    assertTrue(loaded.containsKey("bank-outage"));
+    assertTrue(loaded.get("payday-chaos").loop());
+    assertAt(loaded.get("bank-outage"), 20_000, 1, 60_000);
+  }
+
+  @Test
+  void invalidScenariosAreRejected() {
+    var open = new Scenario("", false, List.of(phase("a", 0), phase("b", 1000)));
+    assertThrows(IllegalArgumentException.class, () -> open.validate("open"));
+    var openLoop = new Scenario("", true, List.of(phase("a", 1000), phase("b", 0)));
+    assertThrows(IllegalArgumentException.class, () -> openLoop.validate("open-loop"));
+    assertThrows(IllegalArgumentException.class, () -> new Scenario("", false, List.of()).validate("empty"));
+    assertThrows(IllegalArgumentException.class, () -> new Scenario("", false, List.of(phase("a", -1))).validate("negative"));
+    var rate = new Scenario("", false, List.of(
+        new Scenario.Phase("a", 0, null, 0, 0, false, null, null, 1.5, null, 0, 0, 0)));
+    assertThrows(IllegalArgumentException.class, () -> rate.validate("rate"));
+    var hold = new Scenario("", false, List.of(
+        new Scenario.Phase("a", 0, null, 0, 0, true, null, null, 0, null, 0, 0, 0)));
+    assertThrows(IllegalArgumentException.class, () -> hold.validate("hold"));
+  }
+
+  @Test
+  void reloadRejectsABadFileAndKeepsTheScenariosItHad() throws Exception {
+    useFile("{\"ok\": {\"phases\": [{\"name\": \"a\", \"durationMs\": 0}]}}");
+    engine.reload();
+    engine.activate("ok");
+
+    useFile("{\"typo\": {\"phases\": [{\"name\": \"a\", \"durationMs\": 0, \"failrate\": 0.5}]}}");
+    assertThrows(UnrecognizedPropertyException.class, engine::reload);
+    useFile("{\"bad\": {\"phases\": [{\"name\": \"a\", \"durationMs\": 0}, {\"name\": \"b\", \"durationMs\": 10}]}}");
+    assertThrows(IllegalArgumentException.class, engine::reload);
+
+    assertEquals(List.of("ok"), List.copyOf(engine.scenarios().keySet()));
+    assertEquals("ok", engine.status().get("active"));
+  }
+
+  @Test
+  void downPhaseStopsEveryInstructionListenerUntilItEnds() throws Exception {
+    var shard0 = mock(MessageListenerContainer.class);
+    var shard1 = mock(MessageListenerContainer.class);
+    when(context.containsBean(InstructionListeners.LISTENER_GROUP)).thenReturn(true);
+    when(context.getBean(InstructionListeners.LISTENER_GROUP, List.class)).thenReturn(List.of(shard0, shard1));
+    useFile("{\"outage\": {\"phases\": [{\"name\": \"down\", \"durationMs\": 60000, \"outage\": \"DOWN\"}]}}");
+    engine.reload();
+
+    engine.activate("outage");
+    engine.tick();
+    engine.tick();
+    verify(shard0, times(1)).stop();
+    verify(shard1, times(1)).stop();
+
+    engine.deactivate();
+    engine.tick();
+    verify(shard0).start();
+    verify(shard1).start();
+  }
+}
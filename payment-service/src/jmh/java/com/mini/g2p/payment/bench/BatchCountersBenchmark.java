@@ -0,0 +1,47 @@
+package com.mini.g2p.payment.bench;
+
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.service.BatchCounters;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counter maintenance: the per-window delta update the status path makes (two statements on the
+ * batch row) against the recount repair path, which rescans the batch and rebuilds its totals.
+ * Run with -t 4 (or more) to see contention on the single batch row. Postgres only.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class BatchCountersBenchmark {
+
+  @Param({"100000"})
+  int batchSize;
+
+  BatchCounters counters;
+  long deltaBatchId;
+  long recountBatchId;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    counters = BenchApp.context().getBean(BatchCounters.class);
+    // never reaches its total, so completeIfDone runs but never flips it
+    deltaBatchId = BenchApp.sentBatch(1, Integer.MAX_VALUE);
+    recountBatchId = BenchApp.sentBatch(batchSize, batchSize);
+  }
+
+  @Benchmark
+  public boolean applyDelta() {
+    return counters.apply(deltaBatchId, 1, 0);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public PaymentBatch recount() {
+    return counters.recount(recountBatchId);
+  }
+}
@@ -0,0 +1,86 @@
+package com.mini.g2p.payment.bench;
+
+import com.mini.g2p.payment.clients.NotificationsClient;
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import com.mini.g2p.payment.repo.PaymentInstructionBulkWriter;
+import com.mini.g2p.payment.service.*;
+import org.springframework.boot.SpringBootConfiguration;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.amqp.RabbitAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+
+/**
+ * The slice of payment-service the status path runs on: JPA repositories, StatusApplier and the
+ * services it calls, on BenchDb.postgres(). No web server, broker or schedulers; notifications
+ * are dropped. One context per fork, schema from Hibernate (ddl-auto=update).
+ */
+@SpringBootConfiguration
+@EnableAutoConfiguration(exclude = RabbitAutoConfiguration.class)
+@EntityScan("com.mini.g2p.payment.domain")
+@EnableJpaRepositories("com.mini.g2p.payment.repo")
+@Import({StatusApplier.class, BatchCounters.class, BatchTotals.class, StatusDeduplicator.class, BatchProgressHub.class})
+class BenchApp {
+
+  private static ConfigurableApplicationContext context;
+
+  static synchronized ConfigurableApplicationContext context() {
+    if (context == null) {
+      context = new SpringApplicationBuilder(BenchApp.class)
+          .web(WebApplicationType.NONE)
+          .properties("spring.jpa.hibernate.ddl-auto=update",
+              "spring.jpa.open-in-view=false",
+              "spring.jpa.properties.hibernate.jdbc.time_zone=UTC",
+              "spring.jpa.properties.hibernate.jdbc.batch_size=500",
+              "spring.jpa.properties.hibernate.order_updates=true",
+              "spring.main.banner-mode=off",
+              "logging.level.root=WARN")
+          .run();
+      Runtime.getRuntime().addShutdownHook(new Thread(context::close));
+    }
+    return context;
+  }
+
+  /** A PROCESSING batch of `rows` SENT instructions, as the status listener finds it after dispatch. */
+  static long sentBatch(int rows, int totalCount) {
+    var ctx = context();
+    var jdbc = ctx.getBean(JdbcTemplate.class);
+    var b = new PaymentBatch();
+    b.setProgramId(1L);
+    b.setCreatedBy("bench");
+    b.setStatus(PaymentBatch.Status.PROCESSING);
+    b.setTotalCount(totalCount);
+    b.setTotalAmountMinor(150_000L * rows);
+    b.setCurrency("TND");
+    long batchId = ctx.getBean(PaymentBatchRepository.class).save(b).getId();
+    var data = new ArrayList<PaymentInstructionBulkWriter.Row>(rows);
+    for (int i = 0; i < rows; i++) data.add(new PaymentInstructionBulkWriter.Row("citizen" + i, 150_000L, "TND"));
+    ctx.getBean(PaymentInstructionBulkWriter.class).insert(batchId, data);
+    jdbc.update("update payment_instructions set status = 'SENT', sent_at = now(), dispatch_attempts = 1 where batch_id = ?", batchId);
+    ctx.getBean(BatchTotals.class).rebuild(batchId);
+    return batchId;
+  }
+
+  @Bean DataSource dataSource() { return BenchDb.postgres(); }
+
+  @Bean PaymentInstructionBulkWriter bulkWriter(JdbcTemplate jdbc) { return new PaymentInstructionBulkWriter(jdbc, 1000); }
+
+  @Bean NotificationsClient notificationsClient() {
+    return new NotificationsClient("http://localhost:0", "bench", new RestTemplateBuilder()) {
+      @Override public void paymentSucceeded(Long instructionId, Long batchId, Long programId, Long cycleId,
+                                             String username, Object amount, String currency, String bankRef) {}
+      @Override public void paymentBatchCompleted(Long batchId, Long programId, int success, int failed, int total) {}
+    };
+  }
+}
@@ -0,0 +1,73 @@
+package com.mini.g2p.payment.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two archived JMH JSON results (bench-results/jmh-*.json) benchmark by benchmark and
+ * parameter set. Exits with 1 when any primary score got worse by more than the threshold
+ * (percent, default 10): lower throughput, or higher time per operation.
+ *
+ * Usage: BenchCompare baseline.json current.json [thresholdPercent]
+ */
+public final class BenchCompare {
+
+  record Score(String mode, double score, double error, String unit) {}
+
+  private BenchCompare() {}
+
+  public static void main(String[] args) throws IOException {
+    if (args.length < 2) {
+      System.err.println("usage: BenchCompare <baseline.json> <current.json> [thresholdPercent]");
+      System.exit(2);
+    }
+    double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+    var baseline = read(new File(args[0]));
+    var current = read(new File(args[1]));
+
+    int regressions = 0;
+    System.out.printf("%-90s %14s %14s %9s%n", "benchmark", "baseline", "current", "change");
+    for (var e : current.entrySet()) {
+      var now = e.getValue();
+      var before = baseline.get(e.getKey());
+      if (before == null) {
+        System.out.printf("%-90s %14s %14.3f %9s  %s%n", e.getKey(), "-", now.score(), "new", now.unit());
+        continue;
+      }
+      double change = before.score() == 0 ? 0 : (now.score() - before.score()) / before.score() * 100;
+      // throughput: higher is better; every other mode measures time
+      double worse = "thrpt".equals(now.mode()) ? -change : change;
+      boolean regressed = worse > threshold;
+      if (regressed) regressions++;
+      System.out.printf("%-90s %14.3f %14.3f %+8.1f%%  %s%s%n", e.getKey(), before.score(), now.score(), change,
+          now.unit(), regressed ? "  REGRESSION" : "");
+    }
+    baseline.keySet().stream().filter(k -> !current.containsKey(k))
+        .forEach(k -> System.out.printf("%-90s %14.3f %14s %9s%n", k, baseline.get(k).score(), "-", "gone"));
+
+    if (regressions > 0) {
+      System.err.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+      System.exit(1);
+    }
+  }
+
+  private static Map<String, Score> read(File f) throws IOException {
+    Map<String, Score> out = new TreeMap<>();
+    for (JsonNode run : new ObjectMapper().readTree(f)) {
+      Map<String, String> params = new LinkedHashMap<>();
+      run.path("params").fields().forEachRemaining(p -> params.put(p.getKey(), p.getValue().asText()));
+      String name = run.path("benchmark").asText().replace("com.mini.g2p.payment.bench.", "")
+          + (params.isEmpty() ? "" : " " + params);
+      var m = run.path("primaryMetric");
+      out.put(name, new Score(run.path("mode").asText(), m.path("score").asDouble(), m.path("scoreError").asDouble(),
+          m.path("scoreUnit").asText()));
+    }
+    return out;
+  }
+}
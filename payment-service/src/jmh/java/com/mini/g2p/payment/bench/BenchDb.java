@@ -0,0 +1,79 @@
+package com.mini.g2p.payment.bench;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Database for benchmarks: an in-process H2 in PostgreSQL mode by default, or a real
+ * Postgres with -Dbench.jdbcUrl=jdbc:postgresql://localhost:5432/paymentdb?reWriteBatchedInserts=true
+ * (plus bench.user / bench.password). On Postgres the schema is whatever Hibernate created.
+ *
+ * Benchmarks whose SQL H2 cannot run (on conflict do update, skip locked) use postgres(): the
+ * bench.jdbcUrl database when given, otherwise an embedded Postgres started once per fork.
+ * -Dbench.db=embedded moves the H2 benchmarks onto that embedded Postgres too.
+ */
+final class BenchDb {
+
+  private static EmbeddedPostgres embedded;
+  private static HikariDataSource postgres;
+
+  private BenchDb() {}
+
+  static JdbcTemplate open() {
+    String url = System.getProperty("bench.jdbcUrl");
+    if (url == null && "embedded".equals(System.getProperty("bench.db"))) {
+      var jdbc = new JdbcTemplate(postgres());
+      createSchema(jdbc);
+      return jdbc;
+    }
+    boolean h2 = url == null;
+    var ds = new DriverManagerDataSource(
+        h2 ? "jdbc:h2:mem:bench;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1" : url,
+        System.getProperty("bench.user", h2 ? "sa" : "app"),
+        System.getProperty("bench.password", h2 ? "" : "app"));
+    var jdbc = new JdbcTemplate(ds);
+    if (h2) createSchema(jdbc);
+    return jdbc;
+  }
+
+  static synchronized DataSource postgres() {
+    if (postgres != null) return postgres;
+    String url = System.getProperty("bench.jdbcUrl"), user = System.getProperty("bench.user", "app"),
+        password = System.getProperty("bench.password", "app");
+    if (url == null) {
+      try {
+        embedded = EmbeddedPostgres.start();
+      } catch (IOException e) {
+        throw new UncheckedIOException("could not start embedded Postgres", e);
+      }
+      Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+        try { embedded.close(); } catch (IOException ignored) {}
+      }));
+      url = embedded.getJdbcUrl("postgres", "postgres") + "&reWriteBatchedInserts=true";
+      user = "postgres"; password = "postgres";
+    }
+    var ds = new HikariDataSource();
+    ds.setJdbcUrl(url);
+    ds.setUsername(user);
+    ds.setPassword(password);
+    ds.setMaximumPoolSize(16);
+    return postgres = ds;
+  }
+
+  private static void createSchema(JdbcTemplate jdbc) {
+    jdbc.execute("""
+        create table if not exists payment_instructions (
+          id bigint generated by default as identity primary key,
+          batch_id bigint, enrollment_id bigint, beneficiary_username varchar(255),
+          amount_minor bigint, currency varchar(255), status varchar(255),
+          bank_ref varchar(255), fail_reason varchar(255),
+          constraint ux_batch_beneficiary unique (batch_id, beneficiary_username))
+        """);
+  }
+}
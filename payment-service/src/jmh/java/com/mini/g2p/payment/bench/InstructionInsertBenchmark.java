@@ -0,0 +1,62 @@
+package com.mini.g2p.payment.bench;
+
+import com.mini.g2p.payment.repo.PaymentInstructionBulkWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bulk instruction insert throughput; the "rows" secondary result is rows/sec.
+ * The batch id changes per invocation so ux_batch_beneficiary is exercised for real.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class InstructionInsertBenchmark {
+
+  @Param({"10000", "100000", "1000000"})
+  int rows;
+
+  @Param({"1000"})
+  int chunkSize;
+
+  JdbcTemplate jdbc;
+  PaymentInstructionBulkWriter writer;
+  List<PaymentInstructionBulkWriter.Row> data;
+  long batchId;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Rows {
+    public long rows;
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    jdbc = BenchDb.open();
+    writer = new PaymentInstructionBulkWriter(jdbc, chunkSize);
+    data = new ArrayList<>(rows);
+    for (int i = 0; i < rows; i++) data.add(new PaymentInstructionBulkWriter.Row("citizen" + i, 150_000L, "TND"));
+    batchId = System.currentTimeMillis();
+  }
+
+  @Setup(Level.Invocation)
+  public void clean() {
+    // keep the table size flat between invocations; not part of the measurement
+    jdbc.update("delete from payment_instructions where batch_id >= ?", batchId);
+    batchId++;
+  }
+
+  @Benchmark
+  public int insertBatch(Rows counter) {
+    int n = writer.insert(batchId, data);
+    counter.rows += n;
+    return n;
+  }
+}
@@ -0,0 +1,85 @@
+package com.mini.g2p.payment.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mini.g2p.payment.amqp.BulkEnvelope;
+import com.mini.g2p.payment.domain.Money;
+import com.mini.g2p.payment.dto.PaymentInstructionMsg;
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson2JsonMessageConverter as RabbitConfig wires it: instruction messages out (OutboxRelay)
+ * and a listener window of status messages in (PaymentStatusListener), next to the same window
+ * as one BulkEnvelope message. No broker, no database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageSerializationBenchmark {
+
+  @Param({"200"})
+  int window;
+
+  Jackson2JsonMessageConverter converter;
+  PaymentInstructionMsg instruction;
+  Message instructionMessage;
+  List<Message> statusWindow;
+  ObjectMapper mapper;
+  List<PaymentStatusMsg> statuses;
+  Message statusBulk;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    converter = new Jackson2JsonMessageConverter();
+    instruction = new PaymentInstructionMsg(123_456L, 42L, "citizen123456", Money.toDecimal(150_000L, "TND"), "TND", 150_000L, 1);
+    instructionMessage = converter.toMessage(instruction, new MessageProperties());
+    statusWindow = new ArrayList<>(window);
+    statuses = new ArrayList<>(window);
+    for (int i = 0; i < window; i++) {
+      var s = new PaymentStatusMsg(100_000L + i, i % 10 == 0 ? "FAILED" : "SUCCESS", "BANK-" + i, i % 10 == 0 ? "INSUFFICIENT_FUNDS" : null);
+      statuses.add(s);
+      statusWindow.add(converter.toMessage(s, new MessageProperties()));
+    }
+    mapper = new ObjectMapper();
+    statusBulk = BulkEnvelope.encode(mapper, statuses);
+  }
+
+  @Benchmark
+  public Message instructionToMessage() {
+    return converter.toMessage(instruction, new MessageProperties());
+  }
+
+  @Benchmark
+  public Object instructionFromMessage() {
+    return converter.fromMessage(instructionMessage);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void statusWindowFromMessages(Blackhole bh) {
+    for (var m : statusWindow) bh.consume(converter.fromMessage(m));
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Message statusWindowToBulk() {
+    return BulkEnvelope.encode(mapper, statuses);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public Object statusWindowFromBulk() throws Exception {
+    return BulkEnvelope.decode(mapper, statusBulk, PaymentStatusMsg.class);
+  }
+}
@@ -0,0 +1,98 @@
+package com.mini.g2p.payment.bench;
+
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import com.mini.g2p.payment.service.StatusApplier;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StatusApplier.apply for one listener window (what PaymentStatusListener.onStatus does per
+ * consumer batch): dedup lookup, locked read, batched updates, counter and totals deltas, dedup
+ * record. Runs on Postgres (see BenchDb.postgres). The "statuses" secondary result is statuses/sec.
+ *
+ * Each invocation takes the next slice of a SENT batch, reset to SENT outside the measurement,
+ * with fresh bankRefs so nothing is short-circuited as a duplicate; one in ten statuses is FAILED.
+ * applyRedelivery replays an already applied window, which the dedup cache answers alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class StatusApplyBenchmark {
+
+  @Param({"200", "1000"})
+  int window;
+
+  @Param({"100000"})
+  int batchSize;
+
+  StatusApplier applier;
+  JdbcTemplate jdbc;
+  long batchId;
+  long[] ids;
+  int cursor;
+  long seq;
+  List<PaymentStatusMsg> msgs;
+  List<PaymentStatusMsg> applied;
+
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Statuses {
+    public long statuses;
+  }
+
+  @Setup(Level.Trial)
+  public void setup() {
+    var ctx = BenchApp.context();
+    applier = ctx.getBean(StatusApplier.class);
+    jdbc = ctx.getBean(JdbcTemplate.class);
+    batchId = BenchApp.sentBatch(batchSize, batchSize);
+    ids = jdbc.queryForList("select id from payment_instructions where batch_id = ? order by id", Long.class, batchId)
+        .stream().mapToLong(Long::longValue).toArray();
+    applied = window(0);
+    applier.apply(applied);
+    cursor = window;
+  }
+
+  @Setup(Level.Invocation)
+  public void nextWindow() {
+    if (cursor + window > ids.length) cursor = window; // the first window stays applied for applyRedelivery
+    jdbc.update("""
+        update payment_instructions set status = 'SENT', bank_ref = null, fail_reason = null
+         where batch_id = ? and id between ? and ?
+        """, batchId, ids[cursor], ids[cursor + window - 1]);
+    // keep the batch from completing and the counters from drifting
+    jdbc.update("update payment_batches set success_count = 0, failed_count = 0, status = 'PROCESSING' where id = ?", batchId);
+    msgs = window(cursor);
+    cursor += window;
+  }
+
+  private List<PaymentStatusMsg> window(int from) {
+    var out = new ArrayList<PaymentStatusMsg>(window);
+    for (int i = from; i < from + window; i++) {
+      boolean ok = i % 10 != 0;
+      out.add(new PaymentStatusMsg(ids[i], ok ? "SUCCESS" : "FAILED", "BENCH-" + (seq++), ok ? null : "INSUFFICIENT_FUNDS"));
+    }
+    return out;
+  }
+
+  @Benchmark
+  public StatusApplier.Result apply(Statuses counter) {
+    var r = applier.apply(msgs);
+    counter.statuses += msgs.size();
+    return r;
+  }
+
+  @Benchmark
+  public StatusApplier.Result applyRedelivery(Statuses counter) {
+    var r = applier.apply(applied);
+    counter.statuses += applied.size();
+    return r;
+  }
+}
@@ -0,0 +1,67 @@
+package com.mini.g2p.payment.amqp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bulk wire format for instructions and statuses: a gzip-compressed JSON array of the usual
+ * message records, flagged by the x-g2p-bulk header (element count). Messages without the
+ * header are the plain one-record JSON messages, so both formats share the queues.
+ * Same format in mockbank-service (BulkEnvelope there), which answers bulk with bulk.
+ */
+public final class BulkEnvelope {
+
+  public static final String H_BULK = "x-g2p-bulk";
+  public static final String ENCODING = "gzip";
+
+  private BulkEnvelope() {}
+
+  public static boolean isBulk(Message m) {
+    return m.getMessageProperties().getHeader(H_BULK) != null;
+  }
+
+  public static Message encode(ObjectMapper mapper, List<?> items) {
+    var bytes = new ByteArrayOutputStream(64 + items.size() * 48);
+    try (var gz = new GZIPOutputStream(bytes)) {
+      mapper.writeValue(gz, items);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    var props = new MessageProperties();
+    props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+    props.setContentEncoding(ENCODING);
+    props.setHeader(H_BULK, items.size());
+    return new Message(bytes.toByteArray(), props);
+  }
+
+  /** The records of a bulk message, or the single record of a plain one. */
+  public static <T> List<T> decode(ObjectMapper mapper, Message m, Class<T> type) throws IOException {
+    if (!isBulk(m)) return List.of(mapper.readValue(m.getBody(), type));
+    try (var in = new GZIPInputStream(new ByteArrayInputStream(m.getBody()))) {
+      return mapper.readValue(in, mapper.getTypeFactory().constructCollectionType(List.class, type));
+    }
+  }
+
+  /** A plain one-record message carrying the source message's headers, minus the bulk marker. */
+  public static Message single(ObjectMapper mapper, Object item, Message source) {
+    var props = new MessageProperties();
+    source.getMessageProperties().getHeaders().forEach(props::setHeader);
+    props.getHeaders().remove(H_BULK);
+    props.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+    props.setTimestamp(source.getMessageProperties().getTimestamp());
+    try {
+      return new Message(mapper.writeValueAsBytes(item), props);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,30 @@
+package com.mini.g2p.payment.amqp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Contracted instruction rates, keyed by currency (the bank route):
+ * app.payments.dispatch.rate.limits.TND.per-second=200 etc. Unset currencies fall back to
+ * "default"; a per-second of 0 means unlimited.
+ */
+@ConfigurationProperties(prefix = "app.payments.dispatch.rate")
+public class DispatchRateProps {
+
+  public static class Limit {
+    private double perSecond = 0;
+    private int burst = 0; // bucket size; 0 = one second's worth
+    public double getPerSecond(){return perSecond;} public void setPerSecond(double v){this.perSecond=v;}
+    public int getBurst(){return burst;} public void setBurst(int v){this.burst=v;}
+  }
+
+  private Map<String, Limit> limits = new HashMap<>();
+  public Map<String, Limit> getLimits(){return limits;}
+  public void setLimits(Map<String, Limit> v){this.limits=v;}
+
+  public Limit limit(String currency) {
+    return limits.getOrDefault(currency, limits.getOrDefault("default", new Limit()));
+  }
+}
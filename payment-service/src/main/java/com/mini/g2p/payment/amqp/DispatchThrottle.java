@@ -0,0 +1,160 @@
+package com.mini.g2p.payment.amqp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket per currency in front of every instruction publish, so the bank never sees more
+ * than its contracted rate however many relay threads and chunk workers run. Publishers keep
+ * their windows within one burst (maxWindow) and take a window's tokens only when all of them
+ * are there; otherwise they are told how long to wait, and wait without holding row locks or a
+ * connection. Limits are per instance; divide the contract by the replica count.
+ */
+@Component
+public class DispatchThrottle {
+
+  public record Rate(String currency, double allowedPerSecond, double actualPerSecond, long sent) {}
+
+  static final String NO_CURRENCY = "none";
+
+  final class Bucket {
+    final String currency;
+    final double rate, capacity;
+    final Counter sent;
+    final Timer throttled;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private long measuredFrom = System.nanoTime(), measured;
+    private volatile double actual;
+    private volatile long lastSentAt;
+
+    Bucket(String currency, DispatchRateProps.Limit limit) {
+      this.currency = currency;
+      this.rate = Math.max(0, limit.getPerSecond());
+      this.capacity = capacity(limit);
+      this.tokens = capacity;
+      this.sent = Counter.builder("g2p.payments.dispatch.sent").tag("currency", currency)
+          .description("instructions published to the bank").register(meters);
+      this.throttled = Timer.builder("g2p.payments.dispatch.throttled").tag("currency", currency)
+          .description("time publishers waited for rate tokens").register(meters);
+      Gauge.builder("g2p.payments.dispatch.rate.allowed", this, b -> b.rate).tag("currency", currency)
+          .description("contracted instructions per second (0 = unlimited)").register(meters);
+      Gauge.builder("g2p.payments.dispatch.rate.actual", this, Bucket::actual).tag("currency", currency)
+          .description("instructions per second published over the last measuring interval").register(meters);
+    }
+
+    /**
+     * Takes n tokens and returns 0 when they are all there; otherwise takes nothing and returns
+     * the nanos until they will be. More than a full bucket is granted once the bucket is full.
+     */
+    synchronized long reserve(int n) {
+      return reserve(n, System.nanoTime());
+    }
+
+    synchronized long reserve(int n, long now) {
+      if (rate <= 0) return 0;
+      tokens = Math.min(capacity, tokens + (now - refilledAt) * rate / 1e9);
+      refilledAt = now;
+      double need = Math.min(n, capacity);
+      if (tokens < need) return (long) Math.ceil((need - tokens) / rate * 1e9);
+      tokens -= n;
+      return 0;
+    }
+
+    synchronized void refund(int n) {
+      if (rate > 0) tokens = Math.min(capacity, tokens + n);
+    }
+
+    synchronized void record(int n) {
+      long now = System.nanoTime();
+      measured += n;
+      lastSentAt = now;
+      if (now - measuredFrom >= 1_000_000_000L) {
+        actual = measured * 1e9 / (now - measuredFrom);
+        measured = 0;
+        measuredFrom = now;
+      }
+      sent.increment(n);
+    }
+
+    double actual() {
+      // nothing published for a while: the last figure is stale
+      return System.nanoTime() - lastSentAt > 2_000_000_000L ? 0 : actual;
+    }
+  }
+
+  private final DispatchRateProps props;
+  private final MeterRegistry meters;
+  private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+
+  public DispatchThrottle(DispatchRateProps props, MeterRegistry meters) {
+    this.props = props; this.meters = meters;
+  }
+
+  static double capacity(DispatchRateProps.Limit limit) {
+    return limit.getBurst() > 0 ? limit.getBurst() : Math.max(1, limit.getPerSecond());
+  }
+
+  /** Largest window a publisher should lock and send back to back: the smallest limited burst. */
+  public int maxWindow(int windowSize) {
+    int max = windowSize;
+    var limits = new ArrayList<>(props.getLimits().values());
+    limits.add(props.limit("default"));
+    for (var l : limits) if (l.getPerSecond() > 0) max = (int) Math.min(max, Math.max(1, capacity(l)));
+    return Math.max(1, max);
+  }
+
+  /**
+   * Takes the tokens for a window (count per currency) when every currency has them and returns
+   * 0; otherwise takes none and returns the nanos to wait before trying again.
+   */
+  public long tryAcquire(Map<String, Integer> perCurrency) {
+    List<Map.Entry<Bucket, Integer>> taken = new ArrayList<>();
+    for (var e : perCurrency.entrySet()) {
+      var b = bucket(e.getKey());
+      long waitNanos = b.reserve(e.getValue());
+      if (waitNanos > 0) {
+        taken.forEach(t -> t.getKey().refund(t.getValue()));
+        b.throttled.record(waitNanos, TimeUnit.NANOSECONDS);
+        return waitNanos;
+      }
+      taken.add(Map.entry(b, e.getValue()));
+    }
+    return 0;
+  }
+
+  public void await(long waitNanos) {
+    try {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("interrupted while waiting for dispatch rate tokens", e);
+    }
+  }
+
+  /** Counts instructions the broker has confirmed. */
+  public void sent(String currency, int n) {
+    bucket(currency).record(n);
+  }
+
+  public List<Rate> rates() {
+    return buckets.values().stream()
+        .map(b -> new Rate(b.currency, b.rate, b.actual(), (long) b.sent.count()))
+        .sorted(Comparator.comparing(Rate::currency)).toList();
+  }
+
+  private Bucket bucket(String currency) {
+    String key = currency == null || currency.isBlank() ? NO_CURRENCY : currency;
+    return buckets.computeIfAbsent(key, k -> new Bucket(k, props.limit(k)));
+  }
+}
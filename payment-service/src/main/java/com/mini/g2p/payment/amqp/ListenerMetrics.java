@@ -0,0 +1,66 @@
+package com.mini.g2p.payment.amqp;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.amqp.core.Message;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Container advice recording consumer-side metrics for one listener, tagged by listener name:
+ * messages in flight, processing time per delivery (one message or one consumer batch),
+ * batch size, and ack latency = publish timestamp to listener completion (the container
+ * acks right after, in AUTO mode).
+ */
+public class ListenerMetrics implements MethodInterceptor {
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final Timer processing;
+  private final Timer ackLatency;
+  private final DistributionSummary batchSize;
+
+  public ListenerMetrics(MeterRegistry meters, String listener) {
+    Gauge.builder("g2p.amqp.listener.inflight", inFlight, AtomicInteger::get).tag("listener", listener)
+        .description("messages handed to the listener and not yet acked").register(meters);
+    this.processing = Timer.builder("g2p.amqp.listener.processing").tag("listener", listener)
+        .description("listener time per delivery").publishPercentiles(0.5, 0.99).register(meters);
+    this.ackLatency = Timer.builder("g2p.amqp.listener.ack.latency").tag("listener", listener)
+        .description("publish timestamp to ack").publishPercentiles(0.5, 0.99).register(meters);
+    this.batchSize = DistributionSummary.builder("g2p.amqp.listener.batch.size").tag("listener", listener)
+        .description("messages per delivery").register(meters);
+  }
+
+  @Override
+  public Object invoke(MethodInvocation invocation) throws Throwable {
+    List<Message> msgs = messages(invocation.getArguments());
+    inFlight.addAndGet(msgs.size());
+    batchSize.record(msgs.size());
+    long start = System.nanoTime();
+    try {
+      return invocation.proceed();
+    } finally {
+      processing.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+      inFlight.addAndGet(-msgs.size());
+      long now = System.currentTimeMillis();
+      for (var m : msgs) {
+        var ts = m.getMessageProperties().getTimestamp();
+        if (ts != null) ackLatency.record(Math.max(0, now - ts.getTime()), TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  // invokeListener(Channel, Object data): data is a Message or, for consumer batches, a List<Message>
+  @SuppressWarnings("unchecked")
+  private static List<Message> messages(Object[] args) {
+    Object data = args.length > 1 ? args[1] : null;
+    if (data instanceof Message m) return List.of(m);
+    if (data instanceof List<?> l) return (List<Message>) l;
+    return List.of();
+  }
+}
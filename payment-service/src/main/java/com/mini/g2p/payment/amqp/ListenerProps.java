@@ -0,0 +1,35 @@
+package com.mini.g2p.payment.amqp;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Per-listener consumer settings, keyed by listener name ("default", "status", ...):
+ * app.payments.amqp.listeners.status.concurrency=4 etc. Unset names fall back to "default".
+ */
+@ConfigurationProperties(prefix = "app.payments.amqp")
+public class ListenerProps {
+
+  public enum ExecutorType { PLATFORM, VIRTUAL }
+
+  public static class Listener {
+    private int concurrency = 1;
+    private int maxConcurrency = 1;
+    private int prefetch = 250;
+    private ExecutorType executor = ExecutorType.PLATFORM;
+    public int getConcurrency(){return concurrency;} public void setConcurrency(int v){this.concurrency=v;}
+    public int getMaxConcurrency(){return maxConcurrency;} public void setMaxConcurrency(int v){this.maxConcurrency=v;}
+    public int getPrefetch(){return prefetch;} public void setPrefetch(int v){this.prefetch=v;}
+    public ExecutorType getExecutor(){return executor;} public void setExecutor(ExecutorType v){this.executor=v;}
+  }
+
+  private Map<String, Listener> listeners = new HashMap<>();
+  public Map<String, Listener> getListeners(){return listeners;}
+  public void setListeners(Map<String, Listener> v){this.listeners=v;}
+
+  public Listener listener(String name) {
+    return listeners.getOrDefault(name, listeners.getOrDefault("default", new Listener()));
+  }
+}
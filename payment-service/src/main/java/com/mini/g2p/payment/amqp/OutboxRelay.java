@@ -0,0 +1,234 @@
+package com.mini.g2p.payment.amqp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mini.g2p.payment.domain.Money;
+import com.mini.g2p.payment.dto.PaymentInstructionMsg;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains payment_outbox to RabbitMQ. Each relay thread owns the partition
+ * mod(batch_id, relays) and repeatedly: locks a window of rows (skip locked, so several
+ * service instances can relay side by side), publishes it with publisher confirms, deletes it
+ * and stamps the instructions' sent_at in the same transaction. A crash before commit re-sends the window, which
+ * status ingestion tolerates. Windows are capped at the rate limit's burst; a window the
+ * DispatchThrottle has no tokens for yet is rolled back, releasing its locks and connection,
+ * and retried after the wait. Rows of paused batches stay in the outbox until the batch is resumed.
+ *
+ * With bulk-size > 1 a window goes out as BulkEnvelope messages of up to bulk-size instructions
+ * per shard routing key instead of one message per instruction.
+ */
+@Component
+public class OutboxRelay {
+
+  /**
+   * Single messages carry the instruction id as AMQP message-id and the dispatch attempt in this
+   * header; bulk elements carry both in the body. A bank that sees an instruction id again must
+   * answer with its first outcome rather than pay again (reconciliation re-dispatches).
+   */
+  public static final String H_DISPATCH_ATTEMPT = "x-g2p-dispatch-attempt";
+
+  record Row(long id, long batchId, long instructionId, Long programId, String username, Long amountMinor, String currency,
+             int attempt) {}
+
+  static final String SELECT_SQL = """
+      select id, batch_id, instruction_id, program_id, beneficiary_username, amount_minor, currency,
+             (select coalesce(i.dispatch_attempts, 1) from payment_instructions i where i.id = payment_outbox.instruction_id)
+        from payment_outbox
+       where mod(batch_id, ?) = ?
+         and batch_id not in (select id from payment_batches where dispatch_paused)
+       order by id
+       limit ?
+         for update skip locked
+      """;
+
+  // the SLA clock (reconciliation) starts once the bank has actually been sent the instruction
+  static final String PUBLISHED_SQL = """
+      with done as (delete from payment_outbox where id = ? returning instruction_id)
+      update payment_instructions set sent_at = now() where id in (select instruction_id from done)
+      """;
+
+  static final String RANGE_SQL = """
+      select id, batch_id, instruction_id, program_id, beneficiary_username, amount_minor, currency,
+             (select coalesce(i.dispatch_attempts, 1) from payment_instructions i where i.id = payment_outbox.instruction_id)
+        from payment_outbox
+       where batch_id = ? and instruction_id between ? and ?
+         and batch_id not in (select id from payment_batches where dispatch_paused)
+       order by id
+       limit ?
+         for update skip locked
+      """;
+
+  private final JdbcTemplate jdbc;
+  private final RabbitTemplate rabbit;
+  private final TransactionTemplate tx;
+  private final InstructionShards shards;
+  private final DispatchThrottle throttle;
+  private final ObjectMapper mapper;
+  private final boolean enabled;
+  private final int relays;
+  private final int windowSize;
+  private final long idleDelayMs;
+  private final long confirmTimeoutMs;
+  private final int bulkSize;
+  private final Counter published;
+  private final Counter messages;
+
+  private volatile long pending;
+  private volatile double lagSeconds;
+  private ScheduledExecutorService pool;
+
+  public OutboxRelay(JdbcTemplate jdbc, RabbitTemplate rabbit, TransactionTemplate tx, InstructionShards shards,
+                     DispatchThrottle throttle, ObjectMapper mapper, MeterRegistry meters,
+                     @Value("${app.payments.outbox.enabled:true}") boolean enabled,
+                     @Value("${app.payments.outbox.relays:2}") int relays,
+                     @Value("${app.payments.outbox.window-size:500}") int windowSize,
+                     @Value("${app.payments.outbox.idle-delay-ms:200}") long idleDelayMs,
+                     @Value("${app.payments.outbox.confirm-timeout-ms:30000}") long confirmTimeoutMs,
+                     @Value("${app.payments.outbox.bulk-size:0}") int bulkSize) {
+    this.jdbc = jdbc; this.rabbit = rabbit; this.tx = tx; this.shards = shards; this.throttle = throttle;
+    this.mapper = mapper;
+    this.enabled = enabled; this.relays = Math.max(1, relays); this.windowSize = throttle.maxWindow(windowSize);
+    this.idleDelayMs = idleDelayMs; this.confirmTimeoutMs = confirmTimeoutMs; this.bulkSize = bulkSize;
+    this.published = Counter.builder("g2p.outbox.published").description("instruction messages relayed").register(meters);
+    this.messages = Counter.builder("g2p.outbox.messages").description("AMQP messages published (bulk or single)")
+        .register(meters);
+    Gauge.builder("g2p.outbox.pending", this, r -> r.pending).description("rows waiting in payment_outbox").register(meters);
+    Gauge.builder("g2p.outbox.lag", this, r -> r.lagSeconds).baseUnit("seconds")
+        .description("age of the oldest unpublished outbox row").register(meters);
+  }
+
+  @PostConstruct
+  void start() {
+    if (!enabled) return;
+    pool = Executors.newScheduledThreadPool(relays + 1);
+    for (int p = 0; p < relays; p++) {
+      final int partition = p;
+      pool.scheduleWithFixedDelay(() -> drain(partition), idleDelayMs, idleDelayMs, TimeUnit.MILLISECONDS);
+    }
+    pool.scheduleWithFixedDelay(this::refreshLag, 1, 5, TimeUnit.SECONDS);
+  }
+
+  @PreDestroy
+  void stop() {
+    if (pool != null) pool.shutdown();
+  }
+
+  // Keep draining while windows come back full; go idle until the next tick otherwise
+  private void drain(int partition) {
+    try {
+      while (relayWindow(partition) == windowSize) { /* more waiting */ }
+    } catch (Exception e) {
+      System.err.println("outbox relay " + partition + " failed: " + e.getMessage());
+    }
+  }
+
+  int relayWindow(int partition) {
+    return relay(SELECT_SQL, relays, partition, windowSize);
+  }
+
+  /**
+   * Publishes the outbox rows of one instruction id range (a dispatch chunk) on the caller's
+   * thread, window by window; rows a relay thread is already holding are skipped.
+   */
+  public int relayRange(long batchId, long fromId, long toId) {
+    int total = 0, n;
+    do {
+      n = relay(RANGE_SQL, batchId, fromId, toId, windowSize);
+      total += n;
+    } while (n == windowSize);
+    return total;
+  }
+
+  private int relay(String sql, Object... args) {
+    long[] wait = new long[1];
+    Integer n;
+    do {
+      if (wait[0] > 0) throttle.await(wait[0]);
+      n = tx.execute(s -> relayLocked(s, wait, sql, args));
+    } while (wait[0] > 0);
+    published.increment(n == null ? 0 : n);
+    return n == null ? 0 : n;
+  }
+
+  private int relayLocked(TransactionStatus s, long[] wait, String sql, Object... args) {
+    List<Row> rows = jdbc.query(sql, (rs, i) -> new Row(
+        rs.getLong(1), rs.getLong(2), rs.getLong(3), (Long) rs.getObject(4), rs.getString(5),
+        (Long) rs.getObject(6), rs.getString(7), Math.max(1, rs.getInt(8))), args);
+    if (rows.isEmpty()) { wait[0] = 0; return 0; }
+
+    Map<String, Integer> perCurrency = new HashMap<>();
+    for (var r : rows) perCurrency.merge(r.currency() == null ? "" : r.currency(), 1, Integer::sum);
+    wait[0] = throttle.tryAcquire(perCurrency);
+    if (wait[0] > 0) {
+      s.setRollbackOnly(); // no tokens yet: give the rows back instead of sleeping on their locks
+      return 0;
+    }
+    int sent = rabbit.invoke(ops -> {
+      int m = 0;
+      if (bulkSize > 1) {
+        // grouped per routing key so each shard still sees its instructions in outbox order
+        Map<String, List<PaymentInstructionMsg>> byKey = new LinkedHashMap<>();
+        for (var r : rows) byKey.computeIfAbsent(shards.routingKey(r.username()), k -> new ArrayList<>()).add(msg(r));
+        for (var e : byKey.entrySet()) {
+          var msgs = e.getValue();
+          for (int from = 0; from < msgs.size(); from += bulkSize, m++) {
+            ops.send(RabbitConfig.EXCHANGE, e.getKey(),
+                BulkEnvelope.encode(mapper, msgs.subList(from, Math.min(msgs.size(), from + bulkSize))));
+          }
+        }
+      } else {
+        for (var r : rows) {
+          ops.convertAndSend(RabbitConfig.EXCHANGE, shards.routingKey(r.username()), msg(r), out -> {
+            out.getMessageProperties().setMessageId(String.valueOf(r.instructionId()));
+            out.getMessageProperties().setHeader(H_DISPATCH_ATTEMPT, r.attempt());
+            return out;
+          });
+          m++;
+        }
+      }
+      ops.waitForConfirmsOrDie(confirmTimeoutMs);
+      return m;
+    });
+    messages.increment(sent);
+    perCurrency.forEach(throttle::sent);
+    jdbc.batchUpdate(PUBLISHED_SQL, rows, rows.size(), (ps, r) -> ps.setLong(1, r.id()));
+    return rows.size();
+  }
+
+  private static PaymentInstructionMsg msg(Row r) {
+    return new PaymentInstructionMsg(r.instructionId(), r.programId(), r.username(),
+        Money.toDecimal(r.amountMinor(), r.currency()), r.currency(), r.amountMinor(), r.attempt());
+  }
+
+  private void refreshLag() {
+    try {
+      jdbc.query("select count(*), min(created_at) from payment_outbox", rs -> {
+        pending = rs.getLong(1);
+        Timestamp oldest = rs.getTimestamp(2);
+        lagSeconds = oldest == null ? 0 : Duration.between(oldest.toInstant(), Instant.now()).toMillis() / 1000.0;
+      });
+    } catch (Exception ignored) {}
+  }
+}
@@ -1,89 +1,67 @@
 package com.mini.g2p.payment.amqp;
 
-import com.mini.g2p.payment.domain.PaymentBatch;
-import com.mini.g2p.payment.domain.PaymentInstruction;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.mini.g2p.payment.dto.PaymentStatusMsg;
-import com.mini.g2p.payment.repo.PaymentBatchRepository;
-import com.mini.g2p.payment.repo.PaymentInstructionRepository;
-import com.mini.g2p.payment.clients.NotificationsClient; 
+import com.mini.g2p.payment.service.StatusApplier;
 
-import lombok.RequiredArgsConstructor;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
 
 
 @Component
-@RequiredArgsConstructor
 public class PaymentStatusListener {
 
-  private final PaymentInstructionRepository instrRepo;
-  private final PaymentBatchRepository batchRepo;
-  private final NotificationsClient notifications; 
-
-@Transactional
-@RabbitListener(queues = RabbitConfig.Q_STATUS)
-public void onStatus(PaymentStatusMsg msg) {
-  var pi = instrRepo.findById(msg.instructionId()).orElse(null);
-  if (pi == null) return;
-
-  var prevInstrStatus = pi.getStatus();
-  boolean isSuccess = "SUCCESS".equalsIgnoreCase(msg.status());
-  var newStatus = isSuccess ? PaymentInstruction.Status.SUCCESS
-                            : PaymentInstruction.Status.FAILED;
-
-  // Update instruction (consume reason)
-  pi.setStatus(newStatus);
-  pi.setBankRef(msg.bankRef());
-  pi.setFailReason(isSuccess ? null : msg.reason());
-  instrRepo.save(pi);
-
-  // Load batch
-  var b = batchRepo.findById(pi.getBatchId()).orElse(null);
-  if (b == null) return;
+  private final StatusApplier applier;
+  private final StatusRetries retries;
+  private final ObjectMapper mapper;
+  private final int batchSize;
 
-  // Notify on first transition to SUCCESS
-  boolean transitionedToSuccess =
-      newStatus == PaymentInstruction.Status.SUCCESS &&
-      prevInstrStatus != PaymentInstruction.Status.SUCCESS;
-  if (transitionedToSuccess) {
-    try {
-      notifications.paymentSucceeded(
-          pi.getId(),
-          b.getId(),
-          b.getProgramId(),
-          b.getCycleId(),
-          pi.getBeneficiaryUsername(),
-          pi.getAmount(),
-          pi.getCurrency(),
-          pi.getBankRef()
-      );
-    } catch (Exception e) {
-      System.err.println("paymentSucceeded notify failed for instr " + pi.getId() + ": " + e.getMessage());
-    }
+  public PaymentStatusListener(StatusApplier applier, StatusRetries retries, ObjectMapper mapper,
+                               @Value("${app.payments.status.batch-size:200}") int batchSize) {
+    this.applier = applier; this.retries = retries; this.mapper = mapper; this.batchSize = Math.max(1, batchSize);
   }
 
-  // Recompute counters & maybe complete
-  var prevBatchStatus = b.getStatus();
-  var items = instrRepo.findByBatchId(b.getId());
-  long succ = items.stream().filter(i -> i.getStatus() == PaymentInstruction.Status.SUCCESS).count();
-  long fail = items.stream().filter(i -> i.getStatus() == PaymentInstruction.Status.FAILED).count();
-  b.setSuccessCount((int) succ);
-  b.setFailedCount((int) fail);
-  if (b.getTotalCount() != null && b.getTotalCount() == succ + fail) {
-    b.setStatus(PaymentBatch.Status.COMPLETED);
+  // Consumer batch: up to batch-size messages (or whatever arrived within receive-timeout), acked
+  // together once applied. Bulk messages (BulkEnvelope) are expanded, so the decoded statuses are
+  // applied in sub-windows of at most batch-size, one transaction each.
+  @RabbitListener(queues = RabbitConfig.Q_STATUS, containerFactory = RabbitConfig.STATUS_FACTORY)
+  public void onStatus(List<Message> raw) {
+    List<PaymentStatusMsg> msgs = new ArrayList<>(raw.size());
+    List<Message> readable = new ArrayList<>(raw.size());
+    for (var m : raw) {
+      try {
+        var decoded = BulkEnvelope.decode(mapper, m, PaymentStatusMsg.class);
+        msgs.addAll(decoded);
+        for (int i = 0; i < decoded.size(); i++) readable.add(m);
+      } catch (Exception e) {
+        retries.park(m, "unreadable status message: " + e.getMessage()); // poison, retrying won't help
+      }
+    }
+    for (int from = 0; from < msgs.size(); from += batchSize) {
+      int to = Math.min(msgs.size(), from + batchSize);
+      applyWindow(msgs.subList(from, to), readable.subList(from, to));
+    }
   }
-  batchRepo.save(b);
 
-  if (prevBatchStatus != PaymentBatch.Status.COMPLETED &&
-      b.getStatus() == PaymentBatch.Status.COMPLETED) {
+  private void applyWindow(List<PaymentStatusMsg> msgs, List<Message> sources) {
     try {
-      notifications.paymentBatchCompleted(
-          b.getId(), b.getProgramId(), b.getSuccessCount(), b.getFailedCount(), b.getTotalCount()
-      );
-    } catch (Exception e) {
-      System.err.println("paymentBatchCompleted notify failed for batch " + b.getId() + ": " + e.getMessage());
+      applier.apply(msgs);
+    } catch (Exception windowFailure) {
+      // Isolate the culprit(s): apply one by one and send only the failing ones to the retry tiers;
+      // a status out of a bulk message retries on its own as a plain message
+      for (int i = 0; i < msgs.size(); i++) {
+        try {
+          applier.apply(List.of(msgs.get(i)));
+        } catch (Exception e) {
+          var source = sources.get(i);
+          retries.retryOrPark(BulkEnvelope.isBulk(source) ? BulkEnvelope.single(mapper, msgs.get(i), source) : source, e);
+        }
+      }
     }
   }
 }
-}
\ No newline at end of file
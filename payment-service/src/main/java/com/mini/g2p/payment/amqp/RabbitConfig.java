@@ -7,22 +7,73 @@ import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFacto
 import org.springframework.amqp.rabbit.connection.ConnectionFactory;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Date;
 
 @Configuration
 @EnableRabbit
+@EnableConfigurationProperties({ListenerProps.class, DispatchRateProps.class})
 public class RabbitConfig {
   public static final String EXCHANGE = "g2p.payments";
   public static final String RK_INSTR = "payment.instruction";
   public static final String RK_STATUS = "payment.status";
   public static final String Q_INSTR  = "q.payment.instructions";
   public static final String Q_STATUS = "q.payment.status";
+  public static final String STATUS_FACTORY = "statusListenerContainerFactory";
+
+  // Dead-lettering: rejected messages land in a parking-lot queue per flow (admin can inspect/replay).
+  // Queue arguments must stay identical in mockbank-service, which declares the same queues.
+  // A broker that declared these queues without the arguments refuses them: see README, "Mise à niveau".
+  public static final String DLX = "g2p.payments.dlx";
+  public static final String DLK_INSTR = "instructions";
+  public static final String DLK_STATUS = "status";
+  public static final String Q_INSTR_PARKING = "q.payment.instructions.parking";
+  public static final String Q_STATUS_PARKING = "q.payment.status.parking";
+
+  // Status retry tiers: TTL queues that dead-letter back onto payment.status when they expire
+  public static final String RETRY_EXCHANGE = "g2p.payments.retry";
+  public static final long[] STATUS_RETRY_DELAYS_MS = { 5_000, 30_000, 300_000 };
+
+  public static String statusRetryQueue(int tier) { return Q_STATUS + ".retry." + tier; }
 
   @Bean TopicExchange paymentsExchange() { return new TopicExchange(EXCHANGE, true, false); }
+  @Bean DirectExchange deadLetterExchange() { return new DirectExchange(DLX, true, false); }
+  @Bean DirectExchange retryExchange() { return new DirectExchange(RETRY_EXCHANGE, true, false); }
+
+  @Bean Queue instructionQueue() { return instructionQueueBuilder(Q_INSTR).build(); }
+  @Bean Queue statusQueue() {
+    return QueueBuilder.durable(Q_STATUS).deadLetterExchange(DLX).deadLetterRoutingKey(DLK_STATUS).build();
+  }
+
+  static QueueBuilder instructionQueueBuilder(String name) {
+    return QueueBuilder.durable(name).deadLetterExchange(DLX).deadLetterRoutingKey(DLK_INSTR);
+  }
+
+  @Bean Declarables parkingQueues(DirectExchange deadLetterExchange) {
+    var instr = QueueBuilder.durable(Q_INSTR_PARKING).build();
+    var status = QueueBuilder.durable(Q_STATUS_PARKING).build();
+    return new Declarables(instr, status,
+        BindingBuilder.bind(instr).to(deadLetterExchange).with(DLK_INSTR),
+        BindingBuilder.bind(status).to(deadLetterExchange).with(DLK_STATUS));
+  }
 
-  @Bean Queue instructionQueue() { return QueueBuilder.durable(Q_INSTR).build(); }
-  @Bean Queue statusQueue()      { return QueueBuilder.durable(Q_STATUS).build(); }
+  @Bean Declarables statusRetryQueues(DirectExchange retryExchange) {
+    var out = new ArrayList<Declarable>();
+    for (int t = 1; t <= STATUS_RETRY_DELAYS_MS.length; t++) {
+      var q = QueueBuilder.durable(statusRetryQueue(t)).ttl((int) STATUS_RETRY_DELAYS_MS[t - 1])
+          .deadLetterExchange(EXCHANGE).deadLetterRoutingKey(RK_STATUS).build();
+      out.add(q);
+      out.add(BindingBuilder.bind(q).to(retryExchange).with(statusRetryQueue(t)));
+    }
+    return new Declarables(out);
+  }
 
   @Bean Binding bindInstruction(Queue instructionQueue, TopicExchange paymentsExchange) {
     return BindingBuilder.bind(instructionQueue).to(paymentsExchange).with(RK_INSTR);
@@ -31,15 +82,58 @@ public class RabbitConfig {
     return BindingBuilder.bind(statusQueue).to(paymentsExchange).with(RK_STATUS);
   }
 
+  // Shard queues q.payment.instructions.{i} <- payment.instruction.{i}; single active consumer keeps per-shard order
+  @Bean Declarables instructionShardQueues(InstructionShards shards, TopicExchange paymentsExchange) {
+    var out = new ArrayList<Declarable>();
+    if (shards.count() > 1) for (int i = 0; i < shards.count(); i++) {
+      var q = instructionQueueBuilder(InstructionShards.queue(i)).singleActiveConsumer().build();
+      out.add(q);
+      out.add(BindingBuilder.bind(q).to(paymentsExchange).with(InstructionShards.routingKey(i)));
+    }
+    return new Declarables(out);
+  }
+
   @Bean Jackson2JsonMessageConverter messageConverter() { return new Jackson2JsonMessageConverter(); }
 
   @Bean RabbitTemplate rabbitTemplate(ConnectionFactory cf, Jackson2JsonMessageConverter mc) {
-    var tpl = new RabbitTemplate(cf); tpl.setMessageConverter(mc); return tpl;
+    var tpl = new RabbitTemplate(cf); tpl.setMessageConverter(mc);
+    // publish timestamp feeds the consumer-side ack latency metric
+    tpl.setBeforePublishPostProcessors(m -> { m.getMessageProperties().setTimestamp(new Date()); return m; });
+    return tpl;
   }
 
   @Bean SimpleRabbitListenerContainerFactory rabbitListenerContainerFactory(
-      ConnectionFactory cf, Jackson2JsonMessageConverter mc) {
+      ConnectionFactory cf, Jackson2JsonMessageConverter mc, ListenerProps props, MeterRegistry meters) {
     var f = new SimpleRabbitListenerContainerFactory();
-    f.setConnectionFactory(cf); f.setMessageConverter(mc); return f;
+    f.setConnectionFactory(cf); f.setMessageConverter(mc);
+    configure(f, "default", props.listener("default"), meters);
+    return f;
+  }
+
+  // Batch-consumer mode for q.payment.status; batch-size=1 gives the old one-message-per-transaction behaviour
+  @Bean(STATUS_FACTORY) SimpleRabbitListenerContainerFactory statusListenerContainerFactory(
+      ConnectionFactory cf, Jackson2JsonMessageConverter mc, ListenerProps props, MeterRegistry meters,
+      @Value("${app.payments.status.batch-size:200}") int batchSize,
+      @Value("${app.payments.status.receive-timeout-ms:250}") long receiveTimeoutMs) {
+    var f = new SimpleRabbitListenerContainerFactory();
+    f.setConnectionFactory(cf); f.setMessageConverter(mc);
+    f.setBatchListener(true); f.setConsumerBatchEnabled(true);
+    f.setBatchSize(batchSize); f.setReceiveTimeout(receiveTimeoutMs);
+    var l = props.listener("status");
+    configure(f, "status", l, meters);
+    f.setPrefetchCount(Math.max(batchSize, l.getPrefetch()));
+    return f;
+  }
+
+  private static void configure(SimpleRabbitListenerContainerFactory f, String name, ListenerProps.Listener l,
+                                MeterRegistry meters) {
+    f.setConcurrentConsumers(l.getConcurrency());
+    f.setMaxConcurrentConsumers(Math.max(l.getConcurrency(), l.getMaxConcurrency()));
+    f.setPrefetchCount(l.getPrefetch());
+    f.setDefaultRequeueRejected(false); // failures dead-letter to the parking lot instead of blocking the queue head
+    if (l.getExecutor() == ListenerProps.ExecutorType.VIRTUAL) {
+      f.setTaskExecutor(new VirtualThreadTaskExecutor("amqp-" + name + "-"));
+    }
+    f.setAdviceChain(new ListenerMetrics(meters, name));
   }
 }
@@ -0,0 +1,55 @@
+package com.mini.g2p.payment.amqp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Moves a status message that could not be applied out of the way of the queue head:
+ * into the next TTL retry tier while x-g2p-retries is below the limit, otherwise into
+ * q.payment.status.parking with the last error attached.
+ */
+@Component
+public class StatusRetries {
+
+  public static final String H_RETRIES = "x-g2p-retries";
+  public static final String H_ERROR = "x-g2p-error";
+  public static final String H_ORIGINAL_RK = "x-g2p-original-rk";
+
+  private final RabbitTemplate rabbit;
+  private final int maxRetries;
+  private final Counter retried;
+  private final Counter parked;
+
+  public StatusRetries(RabbitTemplate rabbit, MeterRegistry meters,
+                       @Value("${app.payments.status.max-retries:3}") int maxRetries) {
+    this.rabbit = rabbit;
+    this.maxRetries = Math.min(maxRetries, RabbitConfig.STATUS_RETRY_DELAYS_MS.length);
+    this.retried = Counter.builder("g2p.payments.status.retried").register(meters);
+    this.parked = Counter.builder("g2p.payments.status.parked").register(meters);
+  }
+
+  public void retryOrPark(Message m, Exception cause) {
+    var props = m.getMessageProperties();
+    Integer n = props.getHeader(H_RETRIES);
+    int retries = n == null ? 0 : n;
+    if (retries >= maxRetries) { park(m, cause.getMessage()); return; }
+
+    props.setHeader(H_RETRIES, retries + 1);
+    props.setHeader(H_ERROR, String.valueOf(cause.getMessage()));
+    rabbit.send(RabbitConfig.RETRY_EXCHANGE, RabbitConfig.statusRetryQueue(retries + 1), m);
+    retried.increment();
+  }
+
+  public void park(Message m, String error) {
+    var props = m.getMessageProperties();
+    props.setHeader(H_ERROR, String.valueOf(error));
+    props.setHeader(H_ORIGINAL_RK, RabbitConfig.RK_STATUS);
+    rabbit.send(RabbitConfig.DLX, RabbitConfig.DLK_STATUS, m);
+    parked.increment();
+    System.err.println("status message parked after " + props.getHeader(H_RETRIES) + " retries: " + error);
+  }
+}
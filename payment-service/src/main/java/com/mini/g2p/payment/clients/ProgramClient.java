@@ -4,25 +4,44 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Component
 public class ProgramClient {
   private final WebClient web;
-  public ProgramClient(@Value("${clients.programBaseUrl:${PROGRAM_CATALOG_BASEURL:http://program-catalog-service:8085}}") String baseUrl) {
+  private final int pageSize;
+  public ProgramClient(@Value("${clients.programBaseUrl:${PROGRAM_CATALOG_BASEURL:http://program-catalog-service:8085}}") String baseUrl,
+                       @Value("${clients.entitlementPageSize:1000}") int pageSize) {
     this.web = WebClient.builder().baseUrl(baseUrl).build();
+    this.pageSize = pageSize;
   }
 
-  public record ApprovedEntitlement(Long id, String username, Double amount, String currency) {}
-  public List<ApprovedEntitlement> getApprovedEntitlements(Long cycleId) {
-    return web.get().uri(uri -> uri.path("/internal/entitlements/approved").queryParam("cycleId", cycleId).build())
-      .accept(MediaType.APPLICATION_JSON).retrieve().bodyToFlux(ApprovedEntitlement.class).collectList()
-      .onErrorResume(err -> Mono.just(List.of())).block();
+  // amountMinor is sent by program-catalog since exact money; amount alone comes from older deployments
+  public record ApprovedEntitlement(Long id, String username, BigDecimal amount, String currency, Long amountMinor) {}
+  public record ApprovedEntitlementPage(List<ApprovedEntitlement> items, Long nextAfterId) {}
+
+  /**
+   * Walks the approved entitlements of a cycle page by page (keyset on id), handing each
+   * page to the sink before fetching the next, so memory stays bounded by one page.
+   * Errors propagate to the caller instead of looking like an empty cycle.
+   */
+  public void forEachApprovedPage(Long cycleId, Consumer<List<ApprovedEntitlement>> sink) {
+    Long afterId = 0L;
+    while (afterId != null) {
+      final long after = afterId;
+      var page = web.get().uri(uri -> uri.path("/internal/entitlements/approved/page")
+              .queryParam("cycleId", cycleId).queryParam("afterId", after).queryParam("limit", pageSize).build())
+          .accept(MediaType.APPLICATION_JSON).retrieve().bodyToMono(ApprovedEntitlementPage.class).block();
+      if (page == null || page.items() == null) break;
+      if (!page.items().isEmpty()) sink.accept(page.items());
+      afterId = page.nextAfterId();
+    }
   }
 
   public record CycleInfo(Long id, Long programId, String state) {}
   public CycleInfo getCycle(Long cycleId) {
     return web.get().uri("/cycles/{id}", cycleId).retrieve().bodyToMono(CycleInfo.class).block();
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,39 @@
+package com.mini.g2p.payment.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * A contiguous id range of a batch's instructions, staged and published as one unit by
+ * ChunkDispatcher. A failed or interrupted dispatch resumes from the chunks not yet PUBLISHED.
+ */
+@Entity
+@Table(name="payment_dispatch_chunks",
+  uniqueConstraints = @UniqueConstraint(name="ux_chunk_batch_no", columnNames={"batchId","chunkNo"}),
+  indexes = @Index(name="ix_chunk_state_updated", columnList="state,updatedAt")
+)
+public class DispatchChunk {
+  public enum State { PENDING, RUNNING, STAGED, PUBLISHED, FAILED }
+
+  @Id @GeneratedValue(strategy=GenerationType.IDENTITY) private Long id;
+  @Column(nullable=false) private Long batchId;
+  @Column(nullable=false) private Integer chunkNo;
+  @Column(nullable=false) private Long fromId;
+  @Column(nullable=false) private Long toId;
+  @Column(nullable=false) private Integer size;
+  @Enumerated(EnumType.STRING) @Column(nullable=false, length=20) private State state = State.PENDING;
+  @Column(nullable=false) private Integer attempts = 0;
+  @Column(length=500) private String lastError;
+  private Instant updatedAt;
+
+  public Long getId(){return id;}
+  public Long getBatchId(){return batchId;}
+  public Integer getChunkNo(){return chunkNo;}
+  public Long getFromId(){return fromId;}
+  public Long getToId(){return toId;}
+  public Integer getSize(){return size;}
+  public State getState(){return state;}
+  public Integer getAttempts(){return attempts;}
+  public String getLastError(){return lastError;}
+  public Instant getUpdatedAt(){return updatedAt;}
+}
@@ -1,10 +1,15 @@
 package com.mini.g2p.payment.domain;
 
 import jakarta.persistence.*;
+import java.math.BigDecimal;
 import java.time.Instant;
 
 @Entity
-@Table(name="payment_batches", indexes = { @Index(name="ix_batch_program", columnList="programId"), @Index(name="ix_batch_cycle", columnList="cycleId") })
+@Table(name="payment_batches",
+  indexes = { @Index(name="ix_batch_program", columnList="programId"), @Index(name="ix_batch_cycle", columnList="cycleId"),
+              @Index(name="ix_batch_created", columnList="createdAt") },
+  uniqueConstraints = @UniqueConstraint(name="ux_batch_cycle", columnNames="cycleId") // one batch per cycle; manual batches have null cycleId
+)
 public class PaymentBatch {
   public enum Status { PENDING, PROCESSING, COMPLETED, FAILED }
 
@@ -15,8 +20,12 @@ public class PaymentBatch {
   @Column(updatable=false) private Instant createdAt;
   @Enumerated(EnumType.STRING) @Column(nullable=false,length=20) private Status status = Status.PENDING;
   private Integer totalCount;
-  private Integer successCount;
-  private Integer failedCount;
+  private Integer successCount = 0;
+  private Integer failedCount = 0;
+  private Long totalAmountMinor;
+  private String currency; // null when the batch mixes currencies
+  private Instant dispatchAt; // chunks are not picked up before this
+  private Boolean dispatchPaused = false;
 
   @PrePersist void pre(){ if(createdAt==null) createdAt=Instant.now(); }
 
@@ -30,4 +39,9 @@ public class PaymentBatch {
   public Integer getTotalCount(){return totalCount;} public void setTotalCount(Integer v){this.totalCount=v;}
   public Integer getSuccessCount(){return successCount;} public void setSuccessCount(Integer v){this.successCount=v;}
   public Integer getFailedCount(){return failedCount;} public void setFailedCount(Integer v){this.failedCount=v;}
+  public Long getTotalAmountMinor(){return totalAmountMinor;} public void setTotalAmountMinor(Long v){this.totalAmountMinor=v;}
+  public String getCurrency(){return currency;} public void setCurrency(String v){this.currency=v;}
+  public Instant getDispatchAt(){return dispatchAt;} public void setDispatchAt(Instant v){this.dispatchAt=v;}
+  public boolean isDispatchPaused(){return Boolean.TRUE.equals(dispatchPaused);} public void setDispatchPaused(boolean v){this.dispatchPaused=v;}
+  public BigDecimal getTotalAmount(){return currency == null ? null : Money.toDecimal(totalAmountMinor, currency);}
 }
\ No newline at end of file
@@ -0,0 +1,31 @@
+package com.mini.g2p.payment.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Per batch, status and currency: instruction count and amount in minor units. Kept up to date
+ * by the statements that move instructions between statuses (see BatchTotals), so financial
+ * aggregates never scan payment_instructions. Currency is '' when the instruction had none.
+ */
+@Entity
+@Table(name="payment_batch_totals",
+  uniqueConstraints = @UniqueConstraint(name="ux_batch_totals", columnNames={"batchId","status","currency"})
+)
+public class PaymentBatchTotal {
+  @Id @GeneratedValue(strategy=GenerationType.IDENTITY) private Long id;
+  @Column(nullable=false) private Long batchId;
+  @Column(nullable=false, length=20) private String status;
+  @Column(nullable=false) private String currency;
+  @Column(nullable=false) private Long instructionCount;
+  @Column(nullable=false) private Long amountMinor;
+  private Instant updatedAt;
+
+  public Long getId(){return id;}
+  public Long getBatchId(){return batchId;}
+  public String getStatus(){return status;}
+  public String getCurrency(){return currency;}
+  public Long getInstructionCount(){return instructionCount;}
+  public Long getAmountMinor(){return amountMinor;}
+  public Instant getUpdatedAt(){return updatedAt;}
+}
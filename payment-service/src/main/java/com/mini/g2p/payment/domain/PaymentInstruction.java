@@ -3,31 +3,57 @@ package com.mini.g2p.payment.domain;
 
 import jakarta.persistence.*;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+
 @Entity
 @Table(name="payment_instructions",
+  indexes = {
+    @Index(name="ix_instr_batch_status_id", columnList="batchId,status,id"),
+    @Index(name="ix_instr_batch_id", columnList="batchId,id"),
+    @Index(name="ix_instr_status_sent", columnList="status,sentAt,id")
+  },
   uniqueConstraints = @UniqueConstraint(name="ux_batch_beneficiary", columnNames={"batchId","beneficiaryUsername"})
 )
 public class PaymentInstruction {
-  public enum Status { PENDING, SENT, SUCCESS, FAILED }
+  public enum Status {
+    PENDING, SENT, SUCCESS, FAILED;
+
+    /** Monotonic bank outcome: SUCCESS is final, a late SUCCESS may still correct a FAILED. */
+    public boolean canMoveTo(Status next) {
+      return switch (this) {
+        case PENDING, SENT -> next == SUCCESS || next == FAILED;
+        case FAILED -> next == SUCCESS || next == FAILED;
+        case SUCCESS -> false;
+      };
+    }
+  }
 
   @Id @GeneratedValue(strategy=GenerationType.IDENTITY) private Long id;
   private Long batchId;
   private Long enrollmentId;
   private String beneficiaryUsername;
-  private Double amount;
+  private Long amountMinor; // see Money
   private String currency;
   @Enumerated(EnumType.STRING) private Status status = Status.PENDING;
   private String bankRef;
   private String failReason;
+  private Instant sentAt;
+  private Integer dispatchAttempts;
+  private Instant resolvedAt; // when the latest bank outcome was applied
 
   // getters/setters
   public Long getId(){return id;}
   public Long getBatchId(){return batchId;} public void setBatchId(Long v){this.batchId=v;}
   public Long getEnrollmentId(){return enrollmentId;} public void setEnrollmentId(Long v){this.enrollmentId=v;}
   public String getBeneficiaryUsername(){return beneficiaryUsername;} public void setBeneficiaryUsername(String v){this.beneficiaryUsername=v;}
-  public Double getAmount(){return amount;} public void setAmount(Double v){this.amount=v;}
+  public Long getAmountMinor(){return amountMinor;} public void setAmountMinor(Long v){this.amountMinor=v;}
+  public BigDecimal getAmount(){return Money.toDecimal(amountMinor, currency);}
   public String getCurrency(){return currency;} public void setCurrency(String v){this.currency=v;}
   public Status getStatus(){return status;} public void setStatus(Status v){this.status=v;}
   public String getBankRef(){return bankRef;} public void setBankRef(String v){this.bankRef=v;}
   public String getFailReason(){return failReason;} public void setFailReason(String v){this.failReason=v;}
+  public Instant getSentAt(){return sentAt;} public void setSentAt(Instant v){this.sentAt=v;}
+  public Integer getDispatchAttempts(){return dispatchAttempts;} public void setDispatchAttempts(Integer v){this.dispatchAttempts=v;}
+  public Instant getResolvedAt(){return resolvedAt;} public void setResolvedAt(Instant v){this.resolvedAt=v;}
 }
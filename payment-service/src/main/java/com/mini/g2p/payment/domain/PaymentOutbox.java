@@ -0,0 +1,37 @@
+package com.mini.g2p.payment.domain;
+
+import jakarta.persistence.*;
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Instruction messages waiting to be published to g2p.payments. Rows are written in the
+ * same transaction that moves instructions to SENT and deleted by OutboxRelay once the
+ * broker has confirmed them.
+ */
+@Entity
+@Table(name="payment_outbox", indexes = {
+    @Index(name="ix_outbox_batch", columnList="batchId"),
+    @Index(name="ix_outbox_instruction", columnList="instructionId") })
+public class PaymentOutbox {
+  @Id @GeneratedValue(strategy=GenerationType.IDENTITY) private Long id;
+  private Long batchId;
+  private Long instructionId;
+  private Long programId;
+  private String beneficiaryUsername;
+  private Long amountMinor;
+  private String currency;
+  @Column(nullable=false) private Instant createdAt;
+
+  @PrePersist void pre(){ if(createdAt==null) createdAt=Instant.now(); }
+
+  public Long getId(){return id;}
+  public Long getBatchId(){return batchId;}
+  public Long getInstructionId(){return instructionId;}
+  public Long getProgramId(){return programId;}
+  public String getBeneficiaryUsername(){return beneficiaryUsername;}
+  public Long getAmountMinor(){return amountMinor;}
+  public BigDecimal getAmount(){return Money.toDecimal(amountMinor, currency);}
+  public String getCurrency(){return currency;}
+  public Instant getCreatedAt(){return createdAt;}
+}
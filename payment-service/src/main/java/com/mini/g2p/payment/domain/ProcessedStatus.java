@@ -0,0 +1,24 @@
+package com.mini.g2p.payment.domain;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/** Bank callbacks already applied, keyed by instructionId + bankRef (see StatusDeduplicator). */
+@Entity
+@Table(name="payment_status_processed",
+  uniqueConstraints = @UniqueConstraint(name="ux_processed_instr_ref", columnNames={"instructionId","bankRef"}),
+  indexes = @Index(name="ix_processed_at", columnList="processedAt")
+)
+public class ProcessedStatus {
+  @Id @GeneratedValue(strategy=GenerationType.IDENTITY) private Long id;
+  @Column(nullable=false) private Long instructionId;
+  @Column(nullable=false) private String bankRef;
+  private String status;
+  @Column(nullable=false) private Instant processedAt;
+
+  public Long getId(){return id;}
+  public Long getInstructionId(){return instructionId;}
+  public String getBankRef(){return bankRef;}
+  public String getStatus(){return status;}
+  public Instant getProcessedAt(){return processedAt;}
+}
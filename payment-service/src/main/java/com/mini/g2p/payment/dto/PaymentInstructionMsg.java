@@ -7,6 +7,8 @@ public record PaymentInstructionMsg(
     Long instructionId,
     Long programId,
     String username,         
-    BigDecimal amount,      
-    String currency
+    BigDecimal amount,       // decimal view of amountMinor, kept for existing consumers
+    String currency,
+    Long amountMinor,
+    Integer dispatchAttempt  // 1 on first dispatch, +1 per reconciliation re-dispatch; instructionId is the idempotency key
 ) {}
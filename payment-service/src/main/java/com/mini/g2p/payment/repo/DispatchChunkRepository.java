@@ -0,0 +1,25 @@
+package com.mini.g2p.payment.repo;
+
+import com.mini.g2p.payment.domain.DispatchChunk;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DispatchChunkRepository extends JpaRepository<DispatchChunk, Long> {
+  List<DispatchChunk> findByBatchIdOrderByChunkNoAsc(Long batchId);
+
+  List<DispatchChunk> findByBatchIdAndStateNot(Long batchId, DispatchChunk.State state);
+
+  // state, chunks, instructions, instructions in chunks out of attempts (only meaningful for FAILED)
+  @Query("""
+      select c.state, count(c), coalesce(sum(c.size), 0),
+             coalesce(sum(case when c.attempts >= :maxAttempts then c.size else 0 end), 0)
+        from DispatchChunk c
+       where c.id in :ids
+       group by c.state
+      """)
+  List<Object[]> countByState(@Param("ids") Collection<Long> ids, @Param("maxAttempts") int maxAttempts);
+}
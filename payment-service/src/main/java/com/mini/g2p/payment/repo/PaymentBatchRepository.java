@@ -1,8 +1,47 @@
 package com.mini.g2p.payment.repo;
 
 import com.mini.g2p.payment.domain.PaymentBatch;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface PaymentBatchRepository extends JpaRepository<PaymentBatch, Long> {}
+import java.util.Optional;
 
+public interface PaymentBatchRepository extends JpaRepository<PaymentBatch, Long> {
 
+  // served by ix_batch_cycle / ux_batch_cycle
+  Optional<PaymentBatch> findFirstByCycleId(Long cycleId);
+
+  // dispatch start serializes on the batch row, so concurrent starts plan one after the other
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select b from PaymentBatch b where b.id = :id")
+  Optional<PaymentBatch> findByIdForUpdate(@Param("id") Long id);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("""
+      update PaymentBatch b
+         set b.successCount = coalesce(b.successCount, 0) + :dSuccess,
+             b.failedCount  = coalesce(b.failedCount, 0) + :dFailed
+       where b.id = :id
+      """)
+  int addCounts(@Param("id") Long id, @Param("dSuccess") int dSuccess, @Param("dFailed") int dFailed);
+
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("""
+      update PaymentBatch b set b.successCount = :success, b.failedCount = :failed
+       where b.id = :id
+      """)
+  int setCounts(@Param("id") Long id, @Param("success") int success, @Param("failed") int failed);
+
+  /** Flips the batch to COMPLETED once counters cover the total; returns 1 only for the caller that did the flip. */
+  @Modifying(flushAutomatically = true, clearAutomatically = true)
+  @Query("""
+      update PaymentBatch b set b.status = :completed
+       where b.id = :id and b.status <> :completed and b.totalCount is not null
+         and b.totalCount = coalesce(b.successCount, 0) + coalesce(b.failedCount, 0)
+      """)
+  int completeIfDone(@Param("id") Long id, @Param("completed") PaymentBatch.Status completed);
+}
@@ -1,10 +1,43 @@
 package com.mini.g2p.payment.repo;
 
 import com.mini.g2p.payment.domain.PaymentInstruction;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface PaymentInstructionRepository extends JpaRepository<PaymentInstruction, Long> {
   List<PaymentInstruction> findByBatchId(Long batchId);
-}
\ No newline at end of file
+
+  // ordered by id so concurrent consumers take row locks in the same order
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select i from PaymentInstruction i where i.id in :ids order by i.id")
+  List<PaymentInstruction> findAllByIdForUpdate(@Param("ids") Collection<Long> ids);
+
+  // rows of [status, count]
+  @Query("select i.status, count(i) from PaymentInstruction i where i.batchId = :batchId group by i.status")
+  List<Object[]> countByStatus(@Param("batchId") Long batchId);
+
+  // [resolved, p50, p90, p99, max] seconds from (last) dispatch to the applied bank outcome
+  @Query(value = """
+      select count(*),
+             percentile_cont(0.5) within group (order by extract(epoch from resolved_at - sent_at)),
+             percentile_cont(0.9) within group (order by extract(epoch from resolved_at - sent_at)),
+             percentile_cont(0.99) within group (order by extract(epoch from resolved_at - sent_at)),
+             max(extract(epoch from resolved_at - sent_at))
+        from payment_instructions
+       where batch_id = :batchId and status in ('SUCCESS', 'FAILED') and sent_at is not null and resolved_at is not null
+      """, nativeQuery = true)
+  List<Object[]> resolutionLatency(@Param("batchId") Long batchId);
+
+  // keyset pages: next `limit` instructions of a batch after `afterId`
+  List<PaymentInstruction> findByBatchIdAndStatusInAndIdGreaterThanOrderByIdAsc(
+      Long batchId, Collection<PaymentInstruction.Status> statuses, Long afterId, Limit limit);
+
+  List<PaymentInstruction> findByBatchIdAndIdGreaterThanOrderByIdAsc(Long batchId, Long afterId, Limit limit);
+}
@@ -0,0 +1,8 @@
+package com.mini.g2p.payment.repo;
+
+import com.mini.g2p.payment.domain.PaymentOutbox;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface PaymentOutboxRepository extends JpaRepository<PaymentOutbox, Long> {
+  long countByBatchId(Long batchId);
+}
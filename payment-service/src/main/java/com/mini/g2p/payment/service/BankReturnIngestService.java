@@ -0,0 +1,218 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Applies a bank return file (CSV: instructionId,status,bankRef,reason) through StatusApplier,
+ * so transitions, dedup, counters and notifications are exactly those of the AMQP status path.
+ * The upload is spooled to a temp file, then read line by line in windows of window-size rows;
+ * progress is polled through the returned job like a dispatch job.
+ */
+@Service
+public class BankReturnIngestService {
+
+  public enum JobState { RUNNING, DONE, FAILED }
+
+  public static class IngestJob {
+    private final String id = UUID.randomUUID().toString();
+    private final String fileName;
+    private final Instant startedAt = Instant.now();
+    private volatile long lines, applied, duplicates, rejected, unmatchedCount, malformedCount;
+    private final List<Long> unmatched = Collections.synchronizedList(new ArrayList<>());
+    private final List<String> malformed = Collections.synchronizedList(new ArrayList<>());
+    private volatile Instant finishedAt;
+    private volatile String error;
+
+    IngestJob(String fileName) { this.fileName = fileName; }
+
+    public String getId(){return id;}
+    public String getFileName(){return fileName;}
+    public Instant getStartedAt(){return startedAt;}
+    public Instant getFinishedAt(){return finishedAt;}
+    public long getLines(){return lines;}
+    public long getApplied(){return applied;}
+    public long getDuplicates(){return duplicates;}
+    public long getRejected(){return rejected;}
+    public long getUnmatchedCount(){return unmatchedCount;}
+    public List<Long> getUnmatched(){return unmatched;}
+    public long getMalformedCount(){return malformedCount;}
+    public List<String> getMalformed(){return malformed;}
+    public String getError(){return error;}
+    public JobState getState(){return error != null ? JobState.FAILED : finishedAt == null ? JobState.RUNNING : JobState.DONE;}
+  }
+
+  private final StatusApplier applier;
+  private final int windowSize;
+  private final int reportLimit;
+  private final Map<String, IngestJob> jobs = new ConcurrentHashMap<>();
+  // one file at a time: a nightly file is already hundreds of thousands of status updates
+  private final ExecutorService worker = Executors.newSingleThreadExecutor(r -> new Thread(r, "bank-return-ingest"));
+
+  public BankReturnIngestService(StatusApplier applier,
+                                 @Value("${app.payments.bank-returns.window-size:1000}") int windowSize,
+                                 @Value("${app.payments.bank-returns.report-limit:1000}") int reportLimit) {
+    this.applier = applier; this.windowSize = windowSize; this.reportLimit = reportLimit;
+  }
+
+  @PreDestroy
+  void stop() { worker.shutdownNow(); }
+
+  /** Spools the upload (plain or gzip) and queues it for ingestion. */
+  public IngestJob submit(String fileName, InputStream upload) throws IOException {
+    pruneFinished();
+    Path spool = Files.createTempFile("bank-return-", ".csv");
+    try (InputStream in = maybeGunzip(upload)) {
+      Files.copy(in, spool, StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      Files.deleteIfExists(spool);
+      throw e;
+    }
+    var job = new IngestJob(fileName);
+    jobs.put(job.id, job);
+    worker.submit(() -> run(job, spool));
+    return job;
+  }
+
+  public Optional<IngestJob> job(String id) { return Optional.ofNullable(jobs.get(id)); }
+
+  private void run(IngestJob job, Path spool) {
+    try (var reader = Files.newBufferedReader(spool, StandardCharsets.UTF_8)) {
+      int[] cols = {0, 1, 2, 3}; // instructionId, status, bankRef, reason
+      List<PaymentStatusMsg> window = new ArrayList<>(windowSize);
+      String line;
+      long n = 0;
+      while ((line = reader.readLine()) != null) {
+        n++;
+        if (line.isBlank() || line.startsWith("#")) continue;
+        var f = splitCsv(line);
+        if (n == 1 && !f.isEmpty() && !isNumber(f.get(0).trim())) { cols = headerColumns(f); continue; }
+
+        var msg = parse(f, cols);
+        if (msg == null) {
+          job.malformedCount++;
+          if (job.malformed.size() < reportLimit) job.malformed.add(n + ": " + line);
+          continue;
+        }
+        window.add(msg);
+        if (window.size() >= windowSize) { applyWindow(job, window); window.clear(); }
+        job.lines = n;
+      }
+      if (!window.isEmpty()) applyWindow(job, window);
+      job.lines = n;
+    } catch (Exception e) {
+      job.error = e.getMessage() == null ? e.toString() : e.getMessage();
+      System.err.println("bank return ingest " + job.id + " failed: " + job.error);
+    } finally {
+      job.finishedAt = Instant.now();
+      try { Files.deleteIfExists(spool); } catch (IOException ignored) {}
+    }
+  }
+
+  private void applyWindow(IngestJob job, List<PaymentStatusMsg> window) {
+    var r = applier.apply(window);
+    job.applied += r.applied();
+    job.duplicates += r.duplicates();
+    job.rejected += r.rejected();
+    job.unmatchedCount += r.unmatched().size();
+    for (var id : r.unmatched()) {
+      if (job.unmatched.size() >= reportLimit) break;
+      job.unmatched.add(id);
+    }
+  }
+
+  private static PaymentStatusMsg parse(List<String> f, int[] cols) {
+    try {
+      Long id = Long.valueOf(field(f, cols[0]));
+      String status = normalizeStatus(field(f, cols[1]));
+      if (status == null) return null;
+      String bankRef = field(f, cols[2]);
+      String reason = field(f, cols[3]);
+      return new PaymentStatusMsg(id, status, bankRef, reason);
+    } catch (NumberFormatException | NullPointerException e) {
+      return null;
+    }
+  }
+
+  // Our own values plus the pain.002 transaction status codes banks commonly return
+  private static String normalizeStatus(String s) {
+    if (s == null) return null;
+    return switch (s.trim().toUpperCase()) {
+      case "SUCCESS", "ACSC" -> "SUCCESS";
+      case "FAILED", "RJCT" -> "FAILED";
+      default -> null;
+    };
+  }
+
+  private static int[] headerColumns(List<String> header) {
+    int[] cols = {-1, -1, -1, -1};
+    for (int i = 0; i < header.size(); i++) {
+      switch (header.get(i).trim().toLowerCase().replace("_", "")) {
+        case "instructionid", "id" -> cols[0] = i;
+        case "status" -> cols[1] = i;
+        case "bankref" -> cols[2] = i;
+        case "reason", "failreason" -> cols[3] = i;
+        default -> {}
+      }
+    }
+    return cols;
+  }
+
+  private static String field(List<String> f, int i) {
+    if (i < 0 || i >= f.size()) return null;
+    String v = f.get(i).trim();
+    return v.isEmpty() ? null : v;
+  }
+
+  private static boolean isNumber(String s) {
+    if (s.isEmpty()) return false;
+    for (int i = 0; i < s.length(); i++) if (!Character.isDigit(s.charAt(i))) return false;
+    return true;
+  }
+
+  static List<String> splitCsv(String line) {
+    List<String> out = new ArrayList<>();
+    var cur = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (quoted) {
+        if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') { cur.append('"'); i++; }
+        else if (c == '"') quoted = false;
+        else cur.append(c);
+      } else if (c == '"') quoted = true;
+      else if (c == ',') { out.add(cur.toString()); cur.setLength(0); }
+      else cur.append(c);
+    }
+    out.add(cur.toString());
+    return out;
+  }
+
+  private static InputStream maybeGunzip(InputStream in) throws IOException {
+    var buffered = new BufferedInputStream(in, 64 * 1024);
+    buffered.mark(2);
+    int b1 = buffered.read(), b2 = buffered.read();
+    buffered.reset();
+    return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(buffered, 64 * 1024) : buffered;
+  }
+
+  private void pruneFinished() {
+    var cutoff = Instant.now().minus(Duration.ofHours(24));
+    jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+  }
+}
@@ -0,0 +1,52 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.domain.PaymentInstruction.Status;
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import com.mini.g2p.payment.repo.PaymentInstructionRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Keeps PaymentBatch success/failed counters in step with instruction status
+ * transitions using atomic SQL deltas, so status callbacks never rescan the batch.
+ */
+@Service
+@RequiredArgsConstructor
+public class BatchCounters {
+
+  private final PaymentBatchRepository batchRepo;
+  private final PaymentInstructionRepository instrRepo;
+  private final BatchTotals totals;
+
+  public static int successDelta(Status prev, Status next) {
+    return (next == Status.SUCCESS ? 1 : 0) - (prev == Status.SUCCESS ? 1 : 0);
+  }
+
+  public static int failedDelta(Status prev, Status next) {
+    return (next == Status.FAILED ? 1 : 0) - (prev == Status.FAILED ? 1 : 0);
+  }
+
+  /** Applies aggregated deltas for a batch; returns true if this call completed the batch. */
+  @Transactional
+  public boolean apply(Long batchId, int dSuccess, int dFailed) {
+    if (dSuccess == 0 && dFailed == 0) return false;
+    batchRepo.addCounts(batchId, dSuccess, dFailed);
+    return batchRepo.completeIfDone(batchId, PaymentBatch.Status.COMPLETED) == 1;
+  }
+
+  /** Repair path: recounts the batch from its instructions and overwrites the counters and amount totals. */
+  @Transactional
+  public PaymentBatch recount(Long batchId) {
+    int success = 0, failed = 0;
+    for (Object[] row : instrRepo.countByStatus(batchId)) {
+      if (row[0] == Status.SUCCESS) success = ((Number) row[1]).intValue();
+      else if (row[0] == Status.FAILED) failed = ((Number) row[1]).intValue();
+    }
+    batchRepo.setCounts(batchId, success, failed);
+    totals.rebuild(batchId);
+    batchRepo.completeIfDone(batchId, PaymentBatch.Status.COMPLETED);
+    return batchRepo.findById(batchId).orElseThrow();
+  }
+}
@@ -0,0 +1,98 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import com.mini.g2p.payment.repo.PaymentInstructionBulkWriter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Consumer;
+
+@Service
+@RequiredArgsConstructor
+public class BatchCreationService {
+
+  private final PaymentBatchRepository batches;
+  private final PaymentInstructionBulkWriter writer;
+  private final JdbcTemplate jdbc;
+  private final BatchTotals totals;
+
+  public record ForCycle(PaymentBatch batch, boolean existing) {}
+
+  /** Pushes rows page by page into the given sink (e.g. straight from a paged remote call). */
+  @FunctionalInterface
+  public interface RowSource {
+    void forEachPage(Consumer<List<PaymentInstructionBulkWriter.Row>> sink);
+  }
+
+  /** Running batch total in minor units (primitive adds); the currency is dropped once two currencies mix. */
+  static final class RunningTotal {
+    int count;
+    long minor;
+    String currency;
+
+    void add(List<PaymentInstructionBulkWriter.Row> rows) {
+      for (var r : rows) {
+        minor = Math.addExact(minor, r.amountMinor());
+        if (count++ == 0) currency = r.currency();
+        else if (currency != null && !Objects.equals(currency, r.currency())) currency = null;
+      }
+    }
+
+    void applyTo(PaymentBatch b) {
+      b.setTotalCount(count);
+      b.setCurrency(currency);
+      b.setTotalAmountMinor(currency == null ? null : minor);
+    }
+  }
+
+  /** Creates the batch and all its instructions in one transaction (all or nothing). */
+  @Transactional
+  public PaymentBatch create(Long programId, Long cycleId, List<PaymentInstructionBulkWriter.Row> rows) {
+    var batch = new PaymentBatch();
+    batch.setProgramId(programId);
+    batch.setCycleId(cycleId);
+    batches.save(batch);
+    writer.insert(batch.getId(), rows);
+    var running = new RunningTotal();
+    running.add(rows);
+    running.applyTo(batch);
+    totals.rebuild(batch.getId());
+    return batches.save(batch);
+  }
+
+  /**
+   * Idempotent from-cycle creation: a transaction-scoped advisory lock on the cycle
+   * serializes concurrent requests, so the second one finds the first one's batch.
+   * Rows are streamed into the bulk writer page by page. Returns a null batch (and
+   * rolls back) when there is nothing to pay.
+   */
+  @Transactional
+  public ForCycle createForCycle(Long programId, Long cycleId, RowSource rows) {
+    jdbc.query("select pg_advisory_xact_lock(hashtextextended('payment_batches.cycle:' || ?, 0))", rs -> null, cycleId);
+    var existing = batches.findFirstByCycleId(cycleId);
+    if (existing.isPresent()) return new ForCycle(existing.get(), true);
+
+    var batch = new PaymentBatch();
+    batch.setProgramId(programId);
+    batch.setCycleId(cycleId);
+    batches.save(batch);
+    var running = new RunningTotal();
+    rows.forEachPage(page -> {
+      writer.insert(batch.getId(), page);
+      running.add(page);
+    });
+    if (running.count == 0) {
+      TransactionAspectSupport.currentTransactionStatus().setRollbackOnly();
+      return new ForCycle(null, false);
+    }
+    running.applyTo(batch);
+    totals.rebuild(batch.getId());
+    return new ForCycle(batches.save(batch), false);
+  }
+}
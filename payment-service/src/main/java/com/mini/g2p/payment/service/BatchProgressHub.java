@@ -0,0 +1,160 @@
+package com.mini.g2p.payment.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Live batch progress for SSE viewers. StatusApplier reports counter deltas after each commit;
+ * they accumulate in memory and a ticker pushes at most one "progress" event per batch per
+ * interval, serialized once and fanned out to every viewer of that batch. The database is read
+ * once when a batch gets its first viewer and then every resync interval (which also picks up
+ * statuses applied on other instances), never per viewer.
+ */
+@Service
+public class BatchProgressHub {
+
+  private static final class Channel {
+    final Long batchId;
+    final Set<SseEmitter> viewers = ConcurrentHashMap.newKeySet();
+    final AtomicInteger pendingSuccess = new AtomicInteger();
+    final AtomicInteger pendingFailed = new AtomicInteger();
+    volatile boolean completed;
+    // written by the ticker thread only (and once on creation)
+    volatile long lastSync;
+    volatile String status;
+    volatile int total, success, failed;
+
+    Channel(Long batchId) { this.batchId = batchId; }
+  }
+
+  private final PaymentBatchRepository batches;
+  private final ObjectMapper mapper;
+  private final long emitterTimeoutMs;
+  private final long resyncMs;
+  private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+
+  public BatchProgressHub(PaymentBatchRepository batches, ObjectMapper mapper, MeterRegistry meters,
+                          @Value("${app.payments.progress.emitter-timeout-ms:1800000}") long emitterTimeoutMs,
+                          @Value("${app.payments.progress.resync-ms:5000}") long resyncMs) {
+    this.batches = batches; this.mapper = mapper;
+    this.emitterTimeoutMs = emitterTimeoutMs; this.resyncMs = resyncMs;
+    Gauge.builder("g2p.payments.progress.viewers", channels,
+        c -> c.values().stream().mapToInt(ch -> ch.viewers.size()).sum())
+        .description("open batch progress streams").register(meters);
+  }
+
+  /** Opens a stream for the batch; the current counters are sent right away. */
+  public SseEmitter subscribe(PaymentBatch b) {
+    var emitter = new SseEmitter(emitterTimeoutMs);
+    var ch = channels.compute(b.getId(), (id, c) -> {
+      if (c == null) { c = new Channel(id); sync(c, b); }
+      c.viewers.add(emitter);
+      return c;
+    });
+    emitter.onCompletion(() -> ch.viewers.remove(emitter));
+    emitter.onTimeout(() -> ch.viewers.remove(emitter));
+    emitter.onError(e -> ch.viewers.remove(emitter));
+    try {
+      emitter.send(SseEmitter.event().name("progress").data(payload(ch, 0, 0), MediaType.APPLICATION_JSON));
+    } catch (IOException e) {
+      ch.viewers.remove(emitter);
+    }
+    return emitter;
+  }
+
+  /** Called after a status window commits; a no-op for batches nobody is watching. */
+  public void onApplied(StatusApplier.Result r) {
+    if (channels.isEmpty()) return;
+    r.deltas().forEach((batchId, d) -> {
+      var ch = channels.get(batchId);
+      if (ch == null) return;
+      ch.pendingSuccess.addAndGet(d.success());
+      ch.pendingFailed.addAndGet(d.failed());
+    });
+    for (var b : r.completed()) {
+      var ch = channels.get(b.getId());
+      if (ch != null) ch.completed = true;
+    }
+  }
+
+  @Scheduled(fixedDelayString = "${app.payments.progress.interval-ms:500}")
+  public void tick() {
+    long now = System.currentTimeMillis();
+    for (var ch : channels.values()) {
+      if (ch.viewers.isEmpty()) { channels.computeIfPresent(ch.batchId, (id, c) -> c.viewers.isEmpty() ? null : c); continue; }
+      try {
+        int dS = ch.pendingSuccess.getAndSet(0);
+        int dF = ch.pendingFailed.getAndSet(0);
+        ch.success += dS; ch.failed += dF;
+        boolean resync = ch.completed || now - ch.lastSync >= resyncMs;
+        if (resync) {
+          var b = batches.findById(ch.batchId).orElse(null);
+          if (b == null) { closeAll(ch); continue; }
+          int before = ch.success + ch.failed;
+          String statusBefore = ch.status;
+          sync(ch, b);
+          // another instance may have moved the counters or the status
+          if (dS == 0 && dF == 0 && before == ch.success + ch.failed
+              && Objects.equals(statusBefore, ch.status) && !ch.completed && !"COMPLETED".equals(ch.status)) continue;
+        } else if (dS == 0 && dF == 0) continue;
+
+        String json = payload(ch, dS, dF);
+        broadcast(ch, json);
+        if ("COMPLETED".equals(ch.status)) closeAll(ch);
+      } catch (Exception e) {
+        System.err.println("progress push failed for batch " + ch.batchId + ": " + e.getMessage());
+      }
+    }
+  }
+
+  private void sync(Channel ch, PaymentBatch b) {
+    ch.status = b.getStatus() == null ? null : b.getStatus().name();
+    ch.total = b.getTotalCount() == null ? 0 : b.getTotalCount();
+    ch.success = b.getSuccessCount() == null ? 0 : b.getSuccessCount();
+    ch.failed = b.getFailedCount() == null ? 0 : b.getFailedCount();
+    ch.lastSync = System.currentTimeMillis();
+  }
+
+  private String payload(Channel ch, int dSuccess, int dFailed) throws JsonProcessingException {
+    var m = new LinkedHashMap<String, Object>();
+    m.put("batchId", ch.batchId);
+    m.put("status", ch.status);
+    m.put("totalCount", ch.total);
+    m.put("successCount", ch.success);
+    m.put("failedCount", ch.failed);
+    m.put("openCount", Math.max(0, ch.total - ch.success - ch.failed));
+    m.put("successDelta", dSuccess);
+    m.put("failedDelta", dFailed);
+    return mapper.writeValueAsString(m);
+  }
+
+  private static void broadcast(Channel ch, String json) {
+    for (var emitter : ch.viewers) {
+      try {
+        emitter.send(SseEmitter.event().name("progress").data(json, MediaType.APPLICATION_JSON));
+      } catch (Exception e) {
+        ch.viewers.remove(emitter); // client went away
+      }
+    }
+  }
+
+  private void closeAll(Channel ch) {
+    for (var emitter : ch.viewers) emitter.complete();
+    ch.viewers.clear();
+    channels.remove(ch.batchId, ch);
+  }
+}
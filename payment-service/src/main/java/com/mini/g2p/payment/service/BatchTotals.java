@@ -0,0 +1,194 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.domain.Money;
+import com.mini.g2p.payment.domain.PaymentInstruction.Status;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * Financial aggregates over payment_batch_totals. Status transitions add signed count/amount
+ * deltas in the same transaction as the instruction update; batch creation and the recount
+ * repair path rebuild a batch's rows with one grouped query. Batches created before the totals
+ * table existed get their rows built the first time a read, a status window or dispatch staging
+ * touches them, so deltas never land on a batch without a base. Program and cycle views group
+ * the (small) totals table joined to payment_batches.
+ */
+@Service
+public class BatchTotals {
+
+  /** One bucket of the totals table, amounts in minor units. */
+  public record Line(String status, String currency, long count, long amountMinor, BigDecimal amount) {}
+
+  /** Per-currency roll-up of the status buckets. */
+  public record CurrencyTotals(String currency, long count, BigDecimal amount,
+                               long successCount, BigDecimal successAmount,
+                               long failedCount, BigDecimal failedAmount,
+                               long openCount, BigDecimal openAmount) {}
+
+  public record View(List<Line> byStatus, List<CurrencyTotals> byCurrency) {}
+
+  record Key(long batchId, String status, String currency) implements Comparable<Key> {
+    public int compareTo(Key o) {
+      int c = Long.compare(batchId, o.batchId);
+      if (c == 0) c = status.compareTo(o.status);
+      return c != 0 ? c : currency.compareTo(o.currency);
+    }
+  }
+
+  /** Deltas collected while applying a window; applied in key order so concurrent windows lock rows alike. */
+  public static final class Changes {
+    private final Map<Key, long[]> deltas = new TreeMap<>();
+
+    public void move(long batchId, Status from, Status to, String currency, Long amountMinor) {
+      long amt = amountMinor == null ? 0 : amountMinor;
+      add(new Key(batchId, from.name(), nz(currency)), -1, -amt);
+      add(new Key(batchId, to.name(), nz(currency)), 1, amt);
+    }
+
+    private void add(Key k, long count, long amount) {
+      var d = deltas.computeIfAbsent(k, x -> new long[2]);
+      d[0] += count;
+      d[1] = Math.addExact(d[1], amount);
+    }
+
+    public boolean isEmpty() { return deltas.isEmpty(); }
+
+    Set<Long> batchIds() {
+      Set<Long> ids = new TreeSet<>();
+      deltas.keySet().forEach(k -> ids.add(k.batchId()));
+      return ids;
+    }
+  }
+
+  static final String UPSERT_SQL = """
+      insert into payment_batch_totals (batch_id, status, currency, instruction_count, amount_minor, updated_at)
+      values (?, ?, ?, ?, ?, now())
+      on conflict (batch_id, status, currency) do update
+         set instruction_count = payment_batch_totals.instruction_count + excluded.instruction_count,
+             amount_minor = payment_batch_totals.amount_minor + excluded.amount_minor,
+             updated_at = now()
+      """;
+
+  static final String GROUP_INSTRUCTIONS_SQL = """
+      select i.batch_id, i.status, coalesce(i.currency, ''), count(*), coalesce(sum(i.amount_minor), 0), now()
+        from payment_instructions i
+      """;
+
+  static final String GROUP_BY_SQL = " group by i.batch_id, i.status, coalesce(i.currency, '')";
+
+  static final String INSERT_PREFIX = """
+      insert into payment_batch_totals (batch_id, status, currency, instruction_count, amount_minor, updated_at)
+      """;
+
+  static final String BATCH_MISSING_SQL = INSERT_PREFIX + GROUP_INSTRUCTIONS_SQL + """
+       where i.batch_id = ?
+         and not exists (select 1 from payment_batch_totals t where t.batch_id = i.batch_id)
+      """ + GROUP_BY_SQL + " on conflict do nothing";
+
+  // batches created before the totals table existed get their rows on first read
+  static final String MISSING_FILTER = """
+       join payment_batches b on b.id = i.batch_id
+      where %s
+        and not exists (select 1 from payment_batch_totals t where t.batch_id = b.id)
+      """;
+
+  static final String AGGREGATE_SQL = """
+      select t.status, t.currency, sum(t.instruction_count), sum(t.amount_minor)
+        from payment_batch_totals t
+        join payment_batches b on b.id = t.batch_id
+       where %s
+       group by t.status, t.currency
+       order by t.currency, t.status
+      """;
+
+  private final JdbcTemplate jdbc;
+
+  public BatchTotals(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+  /**
+   * Applies collected deltas inside the caller's transaction, after the instruction rows were
+   * written: a batch that had no rows yet is built from its instructions instead, which already
+   * include this window's changes.
+   */
+  public void apply(Changes changes) {
+    if (changes.isEmpty()) return;
+    var built = ensureRows(changes.batchIds());
+    var rows = changes.deltas.entrySet().stream().filter(e -> !built.contains(e.getKey().batchId())).toList();
+    if (rows.isEmpty()) return;
+    jdbc.batchUpdate(UPSERT_SQL, rows, rows.size(), (ps, e) -> {
+      ps.setLong(1, e.getKey().batchId());
+      ps.setString(2, e.getKey().status());
+      ps.setString(3, e.getKey().currency());
+      ps.setLong(4, e.getValue()[0]);
+      ps.setLong(5, e.getValue()[1]);
+    });
+  }
+
+  /** Recomputes one batch's buckets from its instructions (creation and repair). */
+  @Transactional
+  public void rebuild(Long batchId) {
+    jdbc.update("delete from payment_batch_totals where batch_id = ?", batchId);
+    jdbc.update(INSERT_PREFIX + GROUP_INSTRUCTIONS_SQL + " where i.batch_id = ?" + GROUP_BY_SQL, batchId);
+  }
+
+  /**
+   * Builds the rows of those batches that have none yet from their instructions, in the caller's
+   * transaction; returns the batches it built. Cheap (one index probe) for batches that have rows.
+   */
+  public Set<Long> ensureRows(Collection<Long> batchIds) {
+    Set<Long> built = new HashSet<>();
+    for (Long id : batchIds) if (jdbc.update(BATCH_MISSING_SQL, id) > 0) built.add(id);
+    return built;
+  }
+
+  @Transactional
+  public View forBatch(Long batchId) {
+    fillMissing("b.id = ?", batchId);
+    return view(aggregate("b.id = ?", batchId));
+  }
+
+  @Transactional
+  public View forProgram(Long programId) {
+    fillMissing("b.program_id = ?", programId);
+    return view(aggregate("b.program_id = ?", programId));
+  }
+
+  @Transactional
+  public View forCycle(Long cycleId) {
+    fillMissing("b.cycle_id = ?", cycleId);
+    return view(aggregate("b.cycle_id = ?", cycleId));
+  }
+
+  private void fillMissing(String where, Long id) {
+    jdbc.update(INSERT_PREFIX + GROUP_INSTRUCTIONS_SQL + MISSING_FILTER.formatted(where) + GROUP_BY_SQL
+        + " on conflict do nothing", id);
+  }
+
+  private List<Line> aggregate(String where, Long id) {
+    return jdbc.query(AGGREGATE_SQL.formatted(where),
+        (rs, i) -> new Line(rs.getString(1), rs.getString(2), rs.getLong(3), rs.getLong(4),
+            Money.toDecimal(rs.getLong(4), rs.getString(2))), id);
+  }
+
+  private static View view(List<Line> lines) {
+    var nonEmpty = lines.stream().filter(l -> l.count() != 0 || l.amountMinor() != 0).toList();
+    Map<String, long[]> byCurrency = new TreeMap<>(); // count, amount, success n/amt, failed n/amt
+    for (var l : nonEmpty) {
+      var t = byCurrency.computeIfAbsent(l.currency(), k -> new long[6]);
+      t[0] += l.count(); t[1] += l.amountMinor();
+      if (Status.SUCCESS.name().equals(l.status())) { t[2] += l.count(); t[3] += l.amountMinor(); }
+      if (Status.FAILED.name().equals(l.status())) { t[4] += l.count(); t[5] += l.amountMinor(); }
+    }
+    List<CurrencyTotals> rollup = new ArrayList<>();
+    byCurrency.forEach((cur, t) -> rollup.add(new CurrencyTotals(cur,
+        t[0], Money.toDecimal(t[1], cur), t[2], Money.toDecimal(t[3], cur), t[4], Money.toDecimal(t[5], cur),
+        t[0] - t[2] - t[4], Money.toDecimal(t[1] - t[3] - t[5], cur))));
+    return new View(nonEmpty, rollup);
+  }
+
+  private static String nz(String s) { return s == null ? "" : s; }
+}
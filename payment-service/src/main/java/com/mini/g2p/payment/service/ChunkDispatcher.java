@@ -0,0 +1,250 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.amqp.OutboxRelay;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs a batch's dispatch as fixed-size chunks (contiguous instruction id ranges) on a pool of
+ * `parallelism` workers. Each chunk is claimed with a conditional update, staged
+ * (PENDING -> SENT plus outbox rows, one statement over its id range) and then published by the
+ * worker itself through the outbox relay, so a failure only redoes the chunk it happened in.
+ *
+ * Chunk state lives in payment_dispatch_chunks: FAILED chunks are retried up to max-attempts by
+ * the sweeper, RUNNING chunks whose worker died are reclaimed once their lease expires. Staging
+ * only moves PENDING rows and publishing only reads what is left in the outbox, so re-running
+ * a chunk at any point never sends an instruction twice from here.
+ *
+ * Nothing is claimed outside the daily dispatch window (window-start/window-end, local time in
+ * window-zone; empty = always open), before a batch's scheduled dispatchAt or while it is paused.
+ * The publish rate itself is capped by DispatchThrottle.
+ */
+@Service
+public class ChunkDispatcher {
+
+  public record Plan(int chunks, int firstNo, int lastNo, long instructions) {}
+
+  record Claim(long batchId, long fromId, long toId, Long programId) {}
+
+  // Numbers the batch's PENDING instructions not yet covered by a chunk and cuts them into
+  // ranges of chunkSize; chunk numbers continue after any earlier plan of the same batch.
+  static final String PLAN_SQL = """
+      with base as (
+        select coalesce(max(chunk_no), 0) as no, coalesce(max(to_id), 0) as covered
+          from payment_dispatch_chunks where batch_id = ?
+      ), planned as (
+        insert into payment_dispatch_chunks (batch_id, chunk_no, from_id, to_id, size, state, attempts, updated_at)
+        select ?, (select no from base) + t.c + 1, min(t.id), max(t.id), count(*), 'PENDING', 0, now()
+          from (select id, (row_number() over (order by id) - 1) / ? as c
+                  from payment_instructions
+                 where batch_id = ? and status = 'PENDING' and id > (select covered from base)) t
+         group by t.c
+        returning chunk_no, size
+      )
+      select count(*), coalesce(min(chunk_no), 0), coalesce(max(chunk_no), 0), coalesce(sum(size), 0) from planned
+      """;
+
+  // PENDING -> SENT for one chunk, the outbox rows and the PENDING/SENT totals buckets in one
+  // statement: concurrent runs of the same chunk serialize on the row locks and the loser finds
+  // nothing left to move. sent_at stays null until OutboxRelay has actually published the row.
+  static final String STAGE_SQL = """
+      with moved as (
+        update payment_instructions set status = 'SENT', sent_at = null, dispatch_attempts = 1
+         where batch_id = ? and id between ? and ? and status = 'PENDING'
+        returning id, batch_id, beneficiary_username, amount_minor, currency
+      ), staged as (
+        insert into payment_outbox (batch_id, instruction_id, program_id, beneficiary_username, amount_minor, currency, created_at)
+        select m.batch_id, m.id, ?, m.beneficiary_username, m.amount_minor, m.currency, now() from moved m
+        returning 1
+      ), per_currency as (
+        select m.batch_id, coalesce(m.currency, '') as currency, count(*) as n, coalesce(sum(m.amount_minor), 0) as amt
+          from moved m group by m.batch_id, coalesce(m.currency, '')
+      ), totals as (
+        insert into payment_batch_totals (batch_id, status, currency, instruction_count, amount_minor, updated_at)
+        select p.batch_id, s.status, p.currency, s.sign * p.n, s.sign * p.amt, now()
+          from per_currency p cross join (values ('PENDING', -1), ('SENT', 1)) as s(status, sign)
+        on conflict (batch_id, status, currency) do update
+           set instruction_count = payment_batch_totals.instruction_count + excluded.instruction_count,
+               amount_minor = payment_batch_totals.amount_minor + excluded.amount_minor,
+               updated_at = now()
+      )
+      select count(*) from staged
+      """;
+
+  // paused batches and batches scheduled for later keep their chunks where they are
+  static final String CLAIMABLE = """
+      (c.state in ('PENDING', 'STAGED')
+        or (c.state = 'FAILED' and c.attempts < ?)
+        or (c.state = 'RUNNING' and c.updated_at < now() - make_interval(secs => ?)))
+      and not exists (select 1 from payment_batches pb
+                       where pb.id = c.batch_id and (pb.dispatch_paused or pb.dispatch_at > now()))
+      """;
+
+  static final String CLAIM_SQL = """
+      update payment_dispatch_chunks c
+         set state = 'RUNNING', attempts = c.attempts + 1, updated_at = now()
+        from payment_batches b
+       where c.id = ? and b.id = c.batch_id and
+      """ + CLAIMABLE + """
+      returning c.batch_id, c.from_id, c.to_id, b.program_id
+      """;
+
+  static final String LEFT_SQL = """
+      select count(*) from payment_outbox where batch_id = ? and instruction_id between ? and ?
+      """;
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final OutboxRelay relay;
+  private final BatchTotals totals;
+  private final int chunkSize;
+  private final int parallelism;
+  private final int maxAttempts;
+  private final long leaseSeconds;
+  private final LocalTime windowStart, windowEnd;
+  private final ZoneId windowZone;
+  private final ExecutorService workers;
+  private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+  private final Counter published;
+  private final Counter failed;
+
+  public ChunkDispatcher(JdbcTemplate jdbc, TransactionTemplate tx, OutboxRelay relay, BatchTotals totals,
+                         MeterRegistry meters,
+                         @Value("${app.payments.dispatch.chunk-size:5000}") int chunkSize,
+                         @Value("${app.payments.dispatch.parallelism:4}") int parallelism,
+                         @Value("${app.payments.dispatch.max-attempts:5}") int maxAttempts,
+                         @Value("${app.payments.dispatch.lease-seconds:300}") long leaseSeconds,
+                         @Value("${app.payments.dispatch.window-start:}") String windowStart,
+                         @Value("${app.payments.dispatch.window-end:}") String windowEnd,
+                         @Value("${app.payments.dispatch.window-zone:Africa/Tunis}") String windowZone) {
+    this.jdbc = jdbc; this.tx = tx; this.relay = relay; this.totals = totals;
+    this.chunkSize = Math.max(1, chunkSize); this.parallelism = Math.max(1, parallelism);
+    this.maxAttempts = Math.max(1, maxAttempts); this.leaseSeconds = leaseSeconds;
+    this.windowStart = windowStart.isBlank() ? null : LocalTime.parse(windowStart);
+    this.windowEnd = windowEnd.isBlank() ? null : LocalTime.parse(windowEnd);
+    this.windowZone = ZoneId.of(windowZone);
+    this.workers = Executors.newFixedThreadPool(this.parallelism);
+    this.published = Counter.builder("g2p.payments.dispatch.chunks.published")
+        .description("dispatch chunks fully handed to the broker").register(meters);
+    this.failed = Counter.builder("g2p.payments.dispatch.chunks.failed")
+        .description("dispatch chunk attempts that failed").register(meters);
+    Gauge.builder("g2p.payments.dispatch.chunks.inflight", inFlight, Set::size)
+        .description("chunks queued or running on this instance").register(meters);
+  }
+
+  @PreDestroy
+  void stop() {
+    workers.shutdown();
+  }
+
+  public int parallelism() { return parallelism; }
+
+  public int maxAttempts() { return maxAttempts; }
+
+  /** True when now falls in the daily dispatch window; a window may span midnight (22:00-04:00). */
+  public boolean windowOpen() {
+    return inWindow(windowStart, windowEnd, LocalTime.now(windowZone));
+  }
+
+  static boolean inWindow(LocalTime start, LocalTime end, LocalTime now) {
+    if (start == null || end == null || start.equals(end)) return true;
+    return start.isBefore(end)
+        ? !now.isBefore(start) && now.isBefore(end)
+        : !now.isBefore(start) || now.isBefore(end);
+  }
+
+  /** Cuts the batch's undispatched PENDING instructions into chunks; run inside the caller's transaction. */
+  public Plan plan(long batchId) {
+    return jdbc.queryForObject(PLAN_SQL, (rs, i) -> new Plan(rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getLong(4)),
+        batchId, batchId, chunkSize, batchId);
+  }
+
+  /** Queues every claimable chunk of the batch on the worker pool. */
+  public int submit(long batchId) {
+    return submitAll(jdbc.queryForList("select c.id from payment_dispatch_chunks c where c.batch_id = ? and "
+        + CLAIMABLE + " order by c.chunk_no", Long.class, batchId, maxAttempts, leaseSeconds));
+  }
+
+  /** Makes the batch's FAILED chunks eligible again with a fresh attempt budget, then queues them. */
+  public int resume(long batchId) {
+    jdbc.update("update payment_dispatch_chunks set state = 'PENDING', attempts = 0, last_error = null, updated_at = now()"
+        + " where batch_id = ? and state = 'FAILED'", batchId);
+    return submit(batchId);
+  }
+
+  // Picks up chunks whose worker failed or died (on this or another instance)
+  @Scheduled(fixedDelayString = "${app.payments.dispatch.sweep-ms:5000}",
+             initialDelayString = "${app.payments.dispatch.sweep-ms:5000}")
+  public void sweep() {
+    try {
+      submitAll(jdbc.queryForList("select c.id from payment_dispatch_chunks c where " + CLAIMABLE
+          + " order by c.batch_id, c.chunk_no limit ?", Long.class, maxAttempts, leaseSeconds, parallelism * 4));
+    } catch (Exception e) {
+      System.err.println("dispatch chunk sweep failed: " + e.getMessage());
+    }
+  }
+
+  private int submitAll(List<Long> ids) {
+    if (!windowOpen()) return 0;
+    int n = 0;
+    for (Long id : ids) {
+      if (!inFlight.add(id)) continue;
+      workers.execute(() -> {
+        try { run(id); } finally { inFlight.remove(id); }
+      });
+      n++;
+    }
+    return n;
+  }
+
+  void run(long chunkId) {
+    if (!windowOpen()) return;
+    Claim c = claim(chunkId);
+    if (c == null) return; // finished, or taken by another worker
+    try {
+      tx.executeWithoutResult(s -> {
+        totals.ensureRows(List.of(c.batchId())); // legacy batch: base rows before STAGE_SQL's deltas
+        jdbc.queryForObject(STAGE_SQL, Long.class, c.batchId(), c.fromId(), c.toId(), c.programId());
+        mark(chunkId, "STAGED", null);
+      });
+      relay.relayRange(c.batchId(), c.fromId(), c.toId());
+      Long left = jdbc.queryForObject(LEFT_SQL, Long.class, c.batchId(), c.fromId(), c.toId());
+      // rows another relay thread holds right now are finished by it; the sweeper re-checks later
+      if (left != null && left == 0) {
+        mark(chunkId, "PUBLISHED", null);
+        published.increment();
+      }
+    } catch (Exception e) {
+      failed.increment();
+      System.err.println("dispatch chunk " + chunkId + " of batch " + c.batchId() + " failed: " + e.getMessage());
+      mark(chunkId, "FAILED", e.getMessage());
+    }
+  }
+
+  private Claim claim(long chunkId) {
+    var rows = jdbc.query(CLAIM_SQL, (rs, i) -> new Claim(rs.getLong(1), rs.getLong(2), rs.getLong(3), (Long) rs.getObject(4)),
+        chunkId, maxAttempts, leaseSeconds);
+    return rows.isEmpty() ? null : rows.get(0);
+  }
+
+  private void mark(long chunkId, String state, String error) {
+    if (error != null && error.length() > 500) error = error.substring(0, 500);
+    jdbc.update("update payment_dispatch_chunks set state = ?, last_error = ?, updated_at = now() where id = ?",
+        state, error, chunkId);
+  }
+}
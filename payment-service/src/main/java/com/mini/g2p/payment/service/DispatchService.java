@@ -0,0 +1,146 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.domain.DispatchChunk;
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.repo.DispatchChunkRepository;
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dispatch = one transaction that cuts the batch's PENDING instructions into chunks and marks
+ * the batch PROCESSING; ChunkDispatcher then stages and publishes the chunks in parallel. Each
+ * chunk moves its instructions to SENT together with their outbox rows, so a crash can neither
+ * lose an instruction nor leave it SENT without a message queued, and resumes chunk by chunk.
+ */
+@Service
+public class DispatchService {
+
+  public enum JobState { RUNNING, DONE }
+
+  /**
+   * Progress of every chunk of the batch that was not PUBLISHED when the dispatch started, newly
+   * planned or left over from an earlier dispatch. DONE once none can make progress any more:
+   * failed = instructions in chunks FAILED with their attempts used up (resume to retry them).
+   */
+  public static class DispatchJob {
+    private final String id = UUID.randomUUID().toString();
+    private final Long batchId;
+    private final List<Long> chunkIds;
+    private final long total;
+    private final Instant startedAt = Instant.now();
+    private volatile long published, failed;
+    private volatile Map<DispatchChunk.State, Long> chunks = Map.of();
+    private volatile Instant finishedAt;
+
+    DispatchJob(Long batchId, List<DispatchChunk> unpublished) {
+      this.batchId = batchId;
+      this.chunkIds = unpublished.stream().map(DispatchChunk::getId).toList();
+      this.total = unpublished.stream().mapToLong(DispatchChunk::getSize).sum();
+    }
+
+    public String getId(){return id;}
+    public Long getBatchId(){return batchId;}
+    public long getTotal(){return total;}
+    public long getSent(){return published;}
+    public long getFailed(){return failed;}
+    public Map<DispatchChunk.State, Long> getChunks(){return chunks;}
+    public Instant getStartedAt(){return startedAt;}
+    public Instant getFinishedAt(){return finishedAt;}
+    public JobState getState(){return finishedAt == null ? JobState.RUNNING : JobState.DONE;}
+  }
+
+  private final PaymentBatchRepository batches;
+  private final DispatchChunkRepository chunks;
+  private final ChunkDispatcher chunker;
+  private final TransactionTemplate tx;
+
+  private final Map<String, DispatchJob> jobs = new ConcurrentHashMap<>();
+
+  public DispatchService(PaymentBatchRepository batches, DispatchChunkRepository chunks,
+                         ChunkDispatcher chunker, TransactionTemplate tx) {
+    this.batches = batches; this.chunks = chunks; this.chunker = chunker; this.tx = tx;
+  }
+
+  /**
+   * Plans the batch's chunks, hands them to the worker pool and returns a job tracking how many
+   * have been published. Dispatching again only plans instructions no chunk covers yet and
+   * re-queues the unfinished chunks. With a startAt in the future the chunks are planned now
+   * and picked up by the sweeper once that time has passed.
+   *
+   * Only PENDING and PROCESSING batches can be dispatched (IllegalStateException otherwise).
+   * The batch row is locked while planning, so concurrent starts run one after the other and
+   * the second one finds the first one's chunks.
+   */
+  public DispatchJob start(PaymentBatch b, Instant startAt) {
+    pruneFinished();
+    tx.executeWithoutResult(s -> {
+      var locked = batches.findByIdForUpdate(b.getId())
+          .orElseThrow(() -> new IllegalStateException("batch " + b.getId() + " no longer exists"));
+      var status = locked.getStatus();
+      if (status != PaymentBatch.Status.PENDING && status != PaymentBatch.Status.PROCESSING)
+        throw new IllegalStateException("batch " + b.getId() + " is " + status + "; only PENDING or PROCESSING batches can be dispatched");
+      chunker.plan(b.getId());
+      locked.setStatus(PaymentBatch.Status.PROCESSING);
+      locked.setDispatchAt(startAt);
+      batches.save(locked);
+    });
+    var job = new DispatchJob(b.getId(), chunks.findByBatchIdAndStateNot(b.getId(), DispatchChunk.State.PUBLISHED));
+    chunker.submit(b.getId());
+    jobs.put(job.id, job);
+    return job;
+  }
+
+  /**
+   * Stops handing the batch's chunks to workers and its outbox rows to the broker; the window
+   * being published when this lands still goes out.
+   */
+  public void pause(PaymentBatch b) {
+    b.setDispatchPaused(true);
+    batches.save(b);
+  }
+
+  /** Lifts a pause and clears the attempt budget of the batch's FAILED chunks, then queues them again. */
+  public int resume(PaymentBatch b) {
+    b.setDispatchPaused(false);
+    batches.save(b);
+    return chunker.resume(b.getId());
+  }
+
+  public List<DispatchChunk> chunks(Long batchId) {
+    return chunks.findByBatchIdOrderByChunkNoAsc(batchId);
+  }
+
+  public Optional<DispatchJob> job(String id) {
+    var job = jobs.get(id);
+    if (job != null && job.finishedAt == null) {
+      Map<DispatchChunk.State, Long> byState = new EnumMap<>(DispatchChunk.State.class);
+      long published = 0, failed = 0, open = 0;
+      if (!job.chunkIds.isEmpty()) {
+        for (Object[] r : chunks.countByState(job.chunkIds, chunker.maxAttempts())) {
+          var state = (DispatchChunk.State) r[0];
+          long n = ((Number) r[1]).longValue(), size = ((Number) r[2]).longValue(), exhausted = ((Number) r[3]).longValue();
+          byState.put(state, n);
+          if (state == DispatchChunk.State.PUBLISHED) published += size;
+          else if (state == DispatchChunk.State.FAILED) { failed += exhausted; open += size - exhausted; }
+          else open += size;
+        }
+      }
+      job.chunks = byState;
+      job.published = published;
+      job.failed = failed;
+      if (open == 0) job.finishedAt = Instant.now();
+    }
+    return Optional.ofNullable(job);
+  }
+
+  private void pruneFinished() {
+    var cutoff = Instant.now().minus(Duration.ofHours(1));
+    jobs.values().removeIf(j -> j.finishedAt != null && j.finishedAt.isBefore(cutoff));
+  }
+}
@@ -0,0 +1,70 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.domain.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * One-way migration from the legacy double precision "amount" columns to amount_minor.
+ * Runs at startup in bounded chunks per currency, converting with Money.legacyMinor like
+ * program-catalog-service's EntitlementMoneyBackfill, and does nothing once the legacy column
+ * is gone. Once no row has a null amount_minor, the old columns can be dropped:
+ *   alter table payment_instructions drop column amount;
+ *   alter table payment_outbox drop column amount;
+ */
+@Service
+public class MoneyBackfill {
+
+  private static final List<String> TABLES = List.of("payment_instructions", "payment_outbox");
+
+  private final JdbcTemplate jdbc;
+  private final boolean enabled;
+  private final int chunkSize;
+
+  public MoneyBackfill(JdbcTemplate jdbc,
+                       @Value("${app.payments.money.backfill.enabled:true}") boolean enabled,
+                       @Value("${app.payments.money.backfill.chunk-size:5000}") int chunkSize) {
+    this.jdbc = jdbc; this.enabled = enabled; this.chunkSize = chunkSize;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void run() {
+    if (!enabled) return;
+    for (String table : TABLES) {
+      try {
+        backfill(table);
+      } catch (Exception e) {
+        System.err.println("money backfill of " + table + " failed: " + e.getMessage());
+      }
+    }
+  }
+
+  long backfill(String table) {
+    Integer legacy = jdbc.queryForObject("""
+        select count(*) from information_schema.columns
+         where table_schema = current_schema() and table_name = ? and column_name = 'amount'
+        """, Integer.class, table);
+    if (legacy == null || legacy == 0) return 0;
+
+    long total = 0;
+    var currencies = jdbc.queryForList("select distinct currency from " + table
+        + " where amount_minor is null and amount is not null", String.class);
+    for (String currency : currencies) {
+      String select = "select id, amount from " + table + " where amount_minor is null and amount is not null"
+          + " and currency " + (currency == null ? "is null" : "= ?") + " limit " + chunkSize;
+      Object[] args = currency == null ? new Object[0] : new Object[] { currency };
+      List<Object[]> rows;
+      do {
+        rows = jdbc.query(select, (rs, i) -> new Object[] { Money.legacyMinor(rs.getDouble(2), currency), rs.getLong(1) }, args);
+        if (!rows.isEmpty()) jdbc.batchUpdate("update " + table + " set amount_minor = ? where id = ?", rows);
+        total += rows.size();
+      } while (rows.size() == chunkSize);
+    }
+    return total;
+  }
+}
@@ -0,0 +1,158 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.*;
+
+/**
+ * Finds SENT instructions the bank has not answered within the SLA and either re-dispatches
+ * them through the outbox or, once dispatch attempts are used up, fails them with BANK_TIMEOUT
+ * through StatusApplier (so counters and batch completion follow the normal path).
+ *
+ * Each run walks ix_instr_status_sent by (sent_at, id) keyset in bounded pages, touching only
+ * rows already past the SLA, so it stays cheap enough to run every minute.
+ *
+ * The SLA clock starts when OutboxRelay publishes (it sets sent_at). Instructions still waiting
+ * in payment_outbox (throttled backlog, paused batch, pending re-dispatch) and instructions of
+ * paused batches were not sent yet or may not be sent now, so they are never overdue.
+ *
+ * A re-dispatch sends the bank the same instruction again. It goes out with the same
+ * instruction id (the idempotency key: AMQP message-id, and the id field of bulk elements) and
+ * the incremented dispatch attempt (OutboxRelay.H_DISPATCH_ATTEMPT / dispatchAttempt), so a
+ * bank that executed the first one and only lost the reply answers with its original outcome
+ * instead of paying twice. Only point re-dispatch at banks that honour the key; otherwise set
+ * max-attempts to 1, which turns overdue instructions into BANK_TIMEOUT failures instead.
+ */
+@Service
+public class ReconciliationService {
+
+  public static final String TIMEOUT_REASON = "BANK_TIMEOUT";
+
+  record Overdue(long id, Timestamp sentAt, int attempts) {}
+
+  public record Run(int scanned, int redispatched, int timedOut) {}
+
+  // skip locked: a concurrent run on another instance takes the rows this one is not holding
+  static final String OVERDUE_SQL = """
+      select id, sent_at, coalesce(dispatch_attempts, 1)
+        from payment_instructions
+       where status = 'SENT'
+         and sent_at < now() - make_interval(secs => :sla)
+         and (sent_at, id) > (:afterSentAt, :afterId)
+         and not exists (select 1 from payment_outbox o where o.instruction_id = payment_instructions.id)
+         and batch_id not in (select id from payment_batches where dispatch_paused)
+       order by sent_at, id
+       limit :limit
+         for update skip locked
+      """;
+
+  static final String REDISPATCH_SQL = """
+      with moved as (
+        update payment_instructions i
+           set dispatch_attempts = coalesce(i.dispatch_attempts, 1) + 1
+          from payment_batches b
+         where i.id in (:ids) and i.status = 'SENT' and b.id = i.batch_id and not b.dispatch_paused
+           and not exists (select 1 from payment_outbox o where o.instruction_id = i.id)
+        returning i.id, i.batch_id, b.program_id, i.beneficiary_username, i.amount_minor, i.currency
+      )
+      insert into payment_outbox (batch_id, instruction_id, program_id, beneficiary_username, amount_minor, currency, created_at)
+      select m.batch_id, m.id, m.program_id, m.beneficiary_username, m.amount_minor, m.currency, now() from moved m
+      """;
+
+  // rows dispatched before sent_at existed start their SLA clock now; rows still in the outbox get theirs on publish
+  static final String BACKFILL_SQL = """
+      update payment_instructions set sent_at = now()
+       where id in (select i.id from payment_instructions i
+                     where i.status = 'SENT' and i.sent_at is null
+                       and not exists (select 1 from payment_outbox o where o.instruction_id = i.id)
+                     limit :limit)
+      """;
+
+  private final NamedParameterJdbcTemplate jdbc;
+  private final TransactionTemplate tx;
+  private final StatusApplier applier;
+  private final boolean enabled;
+  private final long slaSeconds;
+  private final int maxAttempts;
+  private final int pageSize;
+  private final int maxPerRun;
+  private final Counter redispatched;
+  private final Counter timedOut;
+
+  public ReconciliationService(NamedParameterJdbcTemplate jdbc, TransactionTemplate tx, StatusApplier applier,
+                               MeterRegistry meters,
+                               @Value("${app.payments.reconcile.enabled:true}") boolean enabled,
+                               @Value("${app.payments.reconcile.sla-seconds:900}") long slaSeconds,
+                               @Value("${app.payments.reconcile.max-attempts:3}") int maxAttempts,
+                               @Value("${app.payments.reconcile.page-size:500}") int pageSize,
+                               @Value("${app.payments.reconcile.max-per-run:20000}") int maxPerRun) {
+    this.jdbc = jdbc; this.tx = tx; this.applier = applier;
+    this.enabled = enabled; this.slaSeconds = slaSeconds; this.maxAttempts = Math.max(1, maxAttempts);
+    this.pageSize = pageSize; this.maxPerRun = maxPerRun;
+    this.redispatched = Counter.builder("g2p.payments.reconcile.redispatched")
+        .description("overdue SENT instructions sent to the bank again").register(meters);
+    this.timedOut = Counter.builder("g2p.payments.reconcile.timedout")
+        .description("instructions failed after exhausting dispatch attempts").register(meters);
+  }
+
+  @Scheduled(fixedDelayString = "${app.payments.reconcile.fixed-delay-ms:60000}",
+             initialDelayString = "${app.payments.reconcile.initial-delay-ms:60000}")
+  public void scheduled() {
+    if (!enabled) return;
+    try {
+      reconcile();
+    } catch (Exception e) {
+      System.err.println("reconcile run failed: " + e.getMessage());
+    }
+  }
+
+  public Run reconcile() {
+    jdbc.update(BACKFILL_SQL, Map.of("limit", pageSize));
+
+    Timestamp afterSentAt = new Timestamp(0);
+    long afterId = 0;
+    int scanned = 0, resent = 0, failed = 0;
+    while (scanned < maxPerRun) {
+      final Timestamp cursorTs = afterSentAt;
+      final long cursorId = afterId;
+      final int limit = Math.min(pageSize, maxPerRun - scanned);
+
+      List<Long> expired = new ArrayList<>();
+      List<Overdue> page = tx.execute(s -> {
+        var rows = jdbc.query(OVERDUE_SQL, Map.of("sla", slaSeconds, "afterSentAt", cursorTs,
+            "afterId", cursorId, "limit", limit),
+            (rs, i) -> new Overdue(rs.getLong(1), rs.getTimestamp(2), rs.getInt(3)));
+        List<Long> retry = new ArrayList<>();
+        for (var o : rows) (o.attempts() < maxAttempts ? retry : expired).add(o.id());
+        if (!retry.isEmpty()) jdbc.update(REDISPATCH_SQL, Map.of("ids", retry));
+        redispatched.increment(retry.size());
+        return rows;
+      });
+      if (page == null || page.isEmpty()) break;
+
+      // timeouts go through the normal status path once the page's locks are released
+      if (!expired.isEmpty()) {
+        var msgs = expired.stream().map(id -> new PaymentStatusMsg(id, "FAILED", null, TIMEOUT_REASON)).toList();
+        int applied = applier.apply(msgs).applied();
+        timedOut.increment(applied);
+        failed += applied;
+      }
+      resent += page.size() - expired.size();
+      scanned += page.size();
+
+      var last = page.get(page.size() - 1);
+      afterSentAt = last.sentAt();
+      afterId = last.id();
+      if (page.size() < limit) break;
+    }
+    return new Run(scanned, resent, failed);
+  }
+}
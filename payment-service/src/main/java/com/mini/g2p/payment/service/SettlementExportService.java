@@ -0,0 +1,262 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.domain.Money;
+import com.mini.g2p.payment.domain.PaymentBatch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a batch's instructions as a settlement file (CSV or pain.001-style XML) straight from a
+ * forward-only JDBC cursor, so memory stays flat whatever the batch size. A SHA-256 of everything
+ * above the trailer is appended last; with gzip it is taken over the uncompressed content.
+ *
+ * Control sums are per currency: the XML has one PmtInf per currency with its own NbOfTxs and
+ * CtrlSum (the group header only carries a CtrlSum when the batch has a single currency), and
+ * the CSV trailer of a mixed batch has one ctrlSum.CCY entry per currency.
+ */
+@Service
+public class SettlementExportService {
+
+  public enum Format {
+    CSV("text/csv", "csv"), XML("application/xml", "xml");
+
+    public final String contentType, extension;
+    Format(String contentType, String extension) { this.contentType = contentType; this.extension = extension; }
+  }
+
+  static final String ROWS_SQL = """
+      select id, beneficiary_username, amount_minor, currency, status, bank_ref, fail_reason
+        from payment_instructions
+       where batch_id = ?
+       order by id
+      """;
+
+  // PmtInf blocks are per currency, so the XML walks the batch currency by currency
+  static final String XML_ROWS_SQL = """
+      select id, beneficiary_username, amount_minor, currency, status, bank_ref, fail_reason
+        from payment_instructions
+       where batch_id = ?
+       order by currency nulls first, id
+      """;
+
+  static final String TOTALS_SQL = """
+      select currency, count(*), coalesce(sum(amount_minor), 0)
+        from payment_instructions where batch_id = ? group by currency order by currency nulls first
+      """;
+
+  static final String PAIN_NS = "urn:iso:std:iso:20022:tech:xsd:pain.001.001.09";
+
+  private final JdbcTemplate jdbc;
+  private final TransactionTemplate readOnlyTx;
+  private final int fetchSize;
+
+  public SettlementExportService(JdbcTemplate jdbc, TransactionTemplate tx,
+                                 @Value("${app.payments.export.fetch-size:1000}") int fetchSize) {
+    this.jdbc = jdbc;
+    // the Postgres driver only streams with a fetch size inside a transaction (autocommit off)
+    this.readOnlyTx = new TransactionTemplate(tx.getTransactionManager());
+    this.readOnlyTx.setReadOnly(true);
+    this.fetchSize = fetchSize;
+  }
+
+  public String fileName(PaymentBatch b, Format f, boolean gzip) {
+    return "batch-" + b.getId() + "." + f.extension + (gzip ? ".gz" : "");
+  }
+
+  public void export(PaymentBatch b, Format format, boolean gzip, OutputStream target) throws IOException {
+    OutputStream sink = gzip ? new GZIPOutputStream(target, 64 * 1024) : target;
+    var digest = new DigestOutputStream(sink, sha256());
+    var out = new BufferedWriter(new OutputStreamWriter(digest, StandardCharsets.UTF_8), 64 * 1024);
+
+    try {
+      readOnlyTx.executeWithoutResult(s -> {
+        try {
+          if (format == Format.CSV) writeCsv(b, out); else writeXml(b, out);
+          out.flush();
+        } catch (IOException | XMLStreamException e) {
+          throw new UncheckedIOException(e instanceof IOException io ? io : new IOException(e));
+        }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    // the trailer itself is not part of the checksum
+    digest.on(false);
+    String sha = HexFormat.of().formatHex(digest.getMessageDigest().digest());
+    String trailer = format == Format.CSV ? "#SHA256," + sha + "\n" : "<!-- SHA256:" + sha + " -->\n";
+    sink.write(trailer.getBytes(StandardCharsets.UTF_8));
+    if (sink instanceof GZIPOutputStream gz) gz.finish();
+    sink.flush();
+  }
+
+  private void writeCsv(PaymentBatch b, Writer out) throws IOException {
+    out.write("instructionId,beneficiary,amount,currency,status,bankRef,failReason\n");
+    long[] rows = {0};
+    Map<String, long[]> sums = new HashMap<>(); // minor units per currency
+    stream(ROWS_SQL, b.getId(), rs -> {
+      long minor = rs.getLong(3);
+      boolean hasAmount = !rs.wasNull();
+      String currency = rs.getString(4);
+      out.write(rs.getLong(1) + "," + csv(rs.getString(2)) + "," + (hasAmount ? plain(Money.toDecimal(minor, currency)) : "")
+          + "," + csv(currency) + "," + csv(rs.getString(5)) + "," + csv(rs.getString(6)) + "," + csv(rs.getString(7)) + "\n");
+      rows[0]++;
+      if (hasAmount) sums.computeIfAbsent(nz(currency), k -> new long[1])[0] += minor;
+    });
+    StringBuilder ctrl = new StringBuilder();
+    if (sums.size() <= 1) {
+      ctrl.append(",ctrlSum=");
+      sums.forEach((ccy, sum) -> ctrl.append(ctrlSum(ccy, sum[0])));
+      if (sums.isEmpty()) ctrl.append('0');
+    } else {
+      new TreeMap<>(sums).forEach((ccy, sum) -> ctrl.append(",ctrlSum.").append(ccy.isEmpty() ? "NOCCY" : ccy).append('=').append(ctrlSum(ccy, sum[0])));
+    }
+    out.write("#TRAILER,batch=" + b.getId() + ",rows=" + rows[0] + ctrl + "\n");
+  }
+
+  // Header counts must come first in pain.001, so they are taken with one aggregate before streaming
+  private void writeXml(PaymentBatch b, Writer out) throws IOException, XMLStreamException {
+    long[] nb = {0};
+    Map<String, long[]> perCurrency = new LinkedHashMap<>(); // currency -> [count, minor sum]
+    jdbc.query(TOTALS_SQL, rs -> {
+      nb[0] += rs.getLong(2);
+      perCurrency.put(nz(rs.getString(1)), new long[]{rs.getLong(2), rs.getLong(3)});
+    }, b.getId());
+
+    XMLStreamWriter x = XMLOutputFactory.newFactory().createXMLStreamWriter(out);
+    x.writeStartDocument("UTF-8", "1.0");
+    x.writeStartElement("Document");
+    x.writeDefaultNamespace(PAIN_NS);
+    x.writeStartElement("CstmrCdtTrfInitn");
+
+    x.writeStartElement("GrpHdr");
+    text(x, "MsgId", "G2P-BATCH-" + b.getId());
+    text(x, "CreDtTm", Instant.now().toString());
+    text(x, "NbOfTxs", String.valueOf(nb[0]));
+    // optional, and a sum across currencies means nothing: only for single-currency batches
+    if (perCurrency.size() == 1) {
+      var only = perCurrency.entrySet().iterator().next();
+      text(x, "CtrlSum", ctrlSum(only.getKey(), only.getValue()[1]));
+    }
+    x.writeStartElement("InitgPty");
+    text(x, "Nm", "G2P program " + b.getProgramId());
+    x.writeEndElement();
+    x.writeEndElement();
+
+    boolean single = perCurrency.size() <= 1;
+    String[] open = {null}; // currency of the PmtInf being written
+    stream(XML_ROWS_SQL, b.getId(), rs -> {
+      try {
+        String ccy = nz(rs.getString(4));
+        if (!ccy.equals(open[0])) {
+          if (open[0] != null) x.writeEndElement(); // PmtInf
+          long[] t = perCurrency.getOrDefault(ccy, new long[2]);
+          x.writeStartElement("PmtInf");
+          text(x, "PmtInfId", "BATCH-" + b.getId() + (single ? "" : "-" + (ccy.isEmpty() ? "NOCCY" : ccy)));
+          text(x, "PmtMtd", "TRF");
+          text(x, "NbOfTxs", String.valueOf(t[0]));
+          text(x, "CtrlSum", ctrlSum(ccy, t[1]));
+          open[0] = ccy;
+        }
+        String id = String.valueOf(rs.getLong(1));
+        x.writeStartElement("CdtTrfTxInf");
+        x.writeStartElement("PmtId");
+        text(x, "InstrId", id);
+        text(x, "EndToEndId", id);
+        x.writeEndElement();
+        x.writeStartElement("Amt");
+        x.writeStartElement("InstdAmt");
+        x.writeAttribute("Ccy", ccy);
+        long minor = rs.getLong(3);
+        x.writeCharacters(rs.wasNull() ? "" : plain(Money.toDecimal(minor, rs.getString(4))));
+        x.writeEndElement();
+        x.writeEndElement();
+        x.writeStartElement("Cdtr");
+        text(x, "Nm", nz(rs.getString(2)));
+        x.writeEndElement();
+        x.writeStartElement("RmtInf");
+        text(x, "Ustrd", nz(rs.getString(5)) + (rs.getString(6) == null ? "" : " " + rs.getString(6)));
+        x.writeEndElement();
+        x.writeEndElement();
+      } catch (XMLStreamException e) {
+        throw new IOException(e);
+      }
+    });
+    if (open[0] == null) { // empty batch: still one (empty) payment information block
+      x.writeStartElement("PmtInf");
+      text(x, "PmtInfId", "BATCH-" + b.getId());
+      text(x, "PmtMtd", "TRF");
+      text(x, "NbOfTxs", "0");
+      text(x, "CtrlSum", "0");
+    }
+    x.writeEndElement(); // PmtInf
+    x.writeEndElement(); // CstmrCdtTrfInitn
+    x.writeEndElement(); // Document
+    x.writeEndDocument();
+    x.flush();
+    out.write("\n");
+  }
+
+  interface RowWriter { void write(ResultSet rs) throws SQLException, IOException; }
+
+  private void stream(String sql, Long batchId, RowWriter w) throws IOException {
+    try {
+      jdbc.query(con -> {
+        var ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        ps.setFetchSize(fetchSize);
+        ps.setLong(1, batchId);
+        return ps;
+      }, rs -> {
+        try { w.write(rs); } catch (IOException e) { throw new UncheckedIOException(e); }
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static void text(XMLStreamWriter x, String name, String value) throws XMLStreamException {
+    x.writeStartElement(name);
+    x.writeCharacters(value);
+    x.writeEndElement();
+  }
+
+  // control sums never add amounts of different currencies; "" stands for a missing currency
+  private static String ctrlSum(String currency, long minor) {
+    return plain(Money.toDecimal(minor, currency.isEmpty() ? null : currency));
+  }
+
+  private static String plain(BigDecimal v) { return v == null ? "" : v.toPlainString(); }
+
+  private static String nz(String s) { return s == null ? "" : s; }
+
+  private static String csv(String s) {
+    if (s == null) return "";
+    if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 && s.indexOf('\r') < 0) return s;
+    return "\"" + s.replace("\"", "\"\"") + "\"";
+  }
+
+  private static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -0,0 +1,140 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.clients.NotificationsClient;
+import com.mini.g2p.payment.domain.PaymentBatch;
+import com.mini.g2p.payment.domain.PaymentInstruction;
+import com.mini.g2p.payment.domain.PaymentInstruction.Status;
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import com.mini.g2p.payment.repo.PaymentInstructionRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * Applies bank status messages in bulk: one locked read for all instructions,
+ * batched instruction updates, one counter update per payment batch, then
+ * notifications once the transaction has committed.
+ */
+@Service
+public class StatusApplier {
+
+  private final PaymentInstructionRepository instrRepo;
+  private final PaymentBatchRepository batchRepo;
+  private final BatchCounters counters;
+  private final NotificationsClient notifications;
+  private final TransactionTemplate tx;
+  private final StatusDeduplicator dedup;
+  private final BatchProgressHub progress;
+  private final BatchTotals totals;
+
+  public StatusApplier(PaymentInstructionRepository instrRepo, PaymentBatchRepository batchRepo,
+                       BatchCounters counters, NotificationsClient notifications, TransactionTemplate tx,
+                       StatusDeduplicator dedup, BatchProgressHub progress, BatchTotals totals) {
+    this.instrRepo = instrRepo; this.batchRepo = batchRepo; this.counters = counters;
+    this.notifications = notifications; this.tx = tx; this.dedup = dedup; this.progress = progress;
+    this.totals = totals;
+  }
+
+  public record Delta(int success, int failed) {}
+
+  public record Result(int applied, int duplicates, int rejected, List<Long> unmatched,
+                       List<PaymentInstruction> succeeded, List<PaymentBatch> completed,
+                       Map<Long, PaymentBatch> batches, Map<Long, Delta> deltas) {}
+
+  public Result apply(List<PaymentStatusMsg> msgs) {
+    // duplicates stop here, before any write
+    var fresh = dedup.filterNew(msgs);
+    int duplicates = msgs.size() - fresh.size();
+    if (fresh.isEmpty()) return new Result(0, duplicates, 0, List.of(), List.of(), List.of(), Map.of(), Map.of());
+
+    var r = tx.execute(s -> {
+      var res = applyInTx(fresh, duplicates);
+      dedup.record(fresh);
+      return res;
+    });
+    dedup.remember(fresh);
+    progress.onApplied(r);
+    sendNotifications(r);
+    return r;
+  }
+
+  private Result applyInTx(List<PaymentStatusMsg> msgs, int duplicates) {
+    // last message wins when the same instruction shows up twice in one window
+    Map<Long, PaymentStatusMsg> byInstr = new LinkedHashMap<>();
+    for (var m : msgs) if (m != null && m.instructionId() != null) byInstr.put(m.instructionId(), m);
+    if (byInstr.isEmpty()) return new Result(0, duplicates, 0, List.of(), List.of(), List.of(), Map.of(), Map.of());
+
+    var found = instrRepo.findAllByIdForUpdate(byInstr.keySet());
+    Set<Long> unmatched = new LinkedHashSet<>(byInstr.keySet());
+    List<PaymentInstruction> succeeded = new ArrayList<>();
+    Map<Long, int[]> deltas = new TreeMap<>(); // batch rows updated in id order, like the instruction locks
+    var amounts = new BatchTotals.Changes();
+    var now = Instant.now();
+    int applied = 0, rejected = 0;
+
+    for (var pi : found) {
+      unmatched.remove(pi.getId());
+      var msg = byInstr.get(pi.getId());
+      var prev = pi.getStatus();
+      boolean isSuccess = "SUCCESS".equalsIgnoreCase(msg.status());
+      var next = isSuccess ? Status.SUCCESS : Status.FAILED;
+      String reason = isSuccess ? null : msg.reason();
+      if (prev == next && Objects.equals(pi.getBankRef(), msg.bankRef())
+          && Objects.equals(pi.getFailReason(), reason)) continue;
+      if (!prev.canMoveTo(next)) { rejected++; continue; } // e.g. a late FAILED after SUCCESS
+
+      // dirty entities are flushed as one JDBC batch (hibernate.jdbc.batch_size)
+      pi.setStatus(next);
+      pi.setBankRef(msg.bankRef());
+      pi.setFailReason(reason);
+      pi.setResolvedAt(now);
+      applied++;
+
+      var d = deltas.computeIfAbsent(pi.getBatchId(), k -> new int[2]);
+      d[0] += BatchCounters.successDelta(prev, next);
+      d[1] += BatchCounters.failedDelta(prev, next);
+      if (next == Status.SUCCESS && prev != Status.SUCCESS) succeeded.add(pi);
+      if (prev != next) amounts.move(pi.getBatchId(), prev, next, pi.getCurrency(), pi.getAmountMinor());
+    }
+
+    instrRepo.flush();
+    totals.apply(amounts);
+    List<Long> completedIds = new ArrayList<>();
+    Map<Long, Delta> batchDeltas = new HashMap<>();
+    deltas.forEach((batchId, d) -> {
+      if (counters.apply(batchId, d[0], d[1])) completedIds.add(batchId);
+      batchDeltas.put(batchId, new Delta(d[0], d[1]));
+    });
+
+    Set<Long> batchIds = new HashSet<>(completedIds);
+    succeeded.forEach(pi -> batchIds.add(pi.getBatchId()));
+    Map<Long, PaymentBatch> batches = new HashMap<>();
+    batchRepo.findAllById(batchIds).forEach(b -> batches.put(b.getId(), b));
+    var completed = completedIds.stream().map(batches::get).filter(Objects::nonNull).toList();
+    return new Result(applied, duplicates, rejected, List.copyOf(unmatched), succeeded, completed, batches, batchDeltas);
+  }
+
+  private void sendNotifications(Result r) {
+    for (var pi : r.succeeded()) {
+      var b = r.batches().get(pi.getBatchId());
+      if (b == null) continue;
+      try {
+        notifications.paymentSucceeded(pi.getId(), b.getId(), b.getProgramId(), b.getCycleId(),
+            pi.getBeneficiaryUsername(), pi.getAmount(), pi.getCurrency(), pi.getBankRef());
+      } catch (Exception e) {
+        System.err.println("paymentSucceeded notify failed for instr " + pi.getId() + ": " + e.getMessage());
+      }
+    }
+    for (var b : r.completed()) {
+      try {
+        notifications.paymentBatchCompleted(
+            b.getId(), b.getProgramId(), b.getSuccessCount(), b.getFailedCount(), b.getTotalCount());
+      } catch (Exception e) {
+        System.err.println("paymentBatchCompleted notify failed for batch " + b.getId() + ": " + e.getMessage());
+      }
+    }
+  }
+}
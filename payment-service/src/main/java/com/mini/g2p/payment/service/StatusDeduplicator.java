@@ -0,0 +1,89 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Drops bank callbacks that were already applied, keyed by instructionId + bankRef.
+ * A bounded LRU answers redeliveries without touching the database; misses fall back
+ * to payment_status_processed, which is written in the same transaction as the status.
+ */
+@Service
+public class StatusDeduplicator {
+
+  private final NamedParameterJdbcTemplate jdbc;
+  private final int cacheSize;
+  private final int retentionDays;
+  private final Counter duplicates;
+  private final Map<String, Boolean> seen;
+
+  public StatusDeduplicator(NamedParameterJdbcTemplate jdbc, MeterRegistry meters,
+                            @Value("${app.payments.status.dedup.cache-size:100000}") int cacheSize,
+                            @Value("${app.payments.status.dedup.retention-days:30}") int retentionDays) {
+    this.jdbc = jdbc;
+    this.cacheSize = cacheSize;
+    this.retentionDays = retentionDays;
+    this.duplicates = Counter.builder("g2p.payments.status.duplicates")
+        .description("status callbacks dropped as already processed").register(meters);
+    this.seen = Collections.synchronizedMap(new LinkedHashMap<>(1024, 0.75f, true) {
+      @Override protected boolean removeEldestEntry(Map.Entry<String, Boolean> e) { return size() > StatusDeduplicator.this.cacheSize; }
+    });
+  }
+
+  static String key(PaymentStatusMsg m) { return m.instructionId() + ":" + m.bankRef(); }
+
+  /** Messages not seen before (and not repeated within the list itself). */
+  public List<PaymentStatusMsg> filterNew(List<PaymentStatusMsg> msgs) {
+    Map<String, PaymentStatusMsg> candidates = new LinkedHashMap<>();
+    for (var m : msgs) {
+      if (m == null || m.instructionId() == null) continue;
+      if (m.bankRef() == null) { candidates.put(UUID.randomUUID().toString(), m); continue; } // nothing to key on
+      if (!seen.containsKey(key(m))) candidates.putIfAbsent(key(m), m);
+    }
+
+    var ids = candidates.values().stream().filter(m -> m.bankRef() != null).map(PaymentStatusMsg::instructionId)
+        .distinct().toList();
+    if (!ids.isEmpty()) {
+      jdbc.query("select instruction_id, bank_ref from payment_status_processed where instruction_id in (:ids)",
+          Map.of("ids", ids), rs -> {
+            String k = rs.getLong(1) + ":" + rs.getString(2);
+            if (candidates.remove(k) != null) seen.put(k, Boolean.TRUE);
+          });
+    }
+    int dropped = msgs.size() - candidates.size();
+    if (dropped > 0) duplicates.increment(dropped);
+    return new ArrayList<>(candidates.values());
+  }
+
+  /** Records the keys inside the caller's transaction, so they commit together with the status change. */
+  public void record(List<PaymentStatusMsg> applied) {
+    var keyed = applied.stream().filter(m -> m.bankRef() != null).toList();
+    if (keyed.isEmpty()) return;
+    jdbc.getJdbcTemplate().batchUpdate("""
+        insert into payment_status_processed (instruction_id, bank_ref, status, processed_at)
+        values (?, ?, ?, now()) on conflict do nothing
+        """, keyed, keyed.size(), (ps, m) -> {
+      ps.setLong(1, m.instructionId());
+      ps.setString(2, m.bankRef());
+      ps.setString(3, m.status());
+    });
+  }
+
+  /** After commit: lets the next redelivery stop at the cache. */
+  public void remember(List<PaymentStatusMsg> applied) {
+    for (var m : applied) if (m.bankRef() != null) seen.put(key(m), Boolean.TRUE);
+  }
+
+  @Scheduled(cron = "${app.payments.status.dedup.purge-cron:0 30 3 * * *}")
+  public void purge() {
+    jdbc.update("delete from payment_status_processed where processed_at < now() - make_interval(days => :days)",
+        Map.of("days", retentionDays));
+  }
+}
@@ -0,0 +1,48 @@
+package com.mini.g2p.payment.web;
+
+import com.mini.g2p.payment.service.BankReturnIngestService;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/payments/bank-returns")
+public class BankReturnController {
+
+  private final BankReturnIngestService ingest;
+
+  public BankReturnController(BankReturnIngestService ingest) { this.ingest = ingest; }
+
+  // Multipart upload (field "file"); poll the returned job for the report
+  @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<?> upload(@RequestHeader HttpHeaders headers, @RequestPart("file") MultipartFile file) throws IOException {
+    if (!SecurityHelpers.isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    if (file.isEmpty()) return ResponseEntity.badRequest().body(Map.of("error","empty file"));
+    try (var in = file.getInputStream()) {
+      return accepted(ingest.submit(file.getOriginalFilename(), in));
+    }
+  }
+
+  // Raw body: curl --data-binary @returns.csv[.gz] -H 'Content-Type: text/csv'
+  @PostMapping(consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
+  public ResponseEntity<?> uploadRaw(@RequestHeader HttpHeaders headers, InputStream body,
+                                     @RequestParam(required=false) String fileName) throws IOException {
+    if (!SecurityHelpers.isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    return accepted(ingest.submit(fileName, body));
+  }
+
+  @GetMapping("/{jobId}")
+  public ResponseEntity<?> job(@RequestHeader HttpHeaders headers, @PathVariable String jobId) {
+    if (!SecurityHelpers.isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    return ingest.job(jobId).<ResponseEntity<?>>map(ResponseEntity::ok)
+        .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error","ingest job not found")));
+  }
+
+  private static ResponseEntity<?> accepted(BankReturnIngestService.IngestJob job) {
+    return ResponseEntity.accepted().body(Map.of("status","INGESTING","jobId",job.getId()));
+  }
+}
@@ -0,0 +1,45 @@
+package com.mini.g2p.payment.web;
+
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import com.mini.g2p.payment.service.SettlementExportService;
+import com.mini.g2p.payment.service.SettlementExportService.Format;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/payments")
+public class BatchExportController {
+
+  private final PaymentBatchRepository batches;
+  private final SettlementExportService exporter;
+
+  public BatchExportController(PaymentBatchRepository batches, SettlementExportService exporter) {
+    this.batches = batches; this.exporter = exporter;
+  }
+
+  // Settlement file for banks/auditors, streamed from the database: ?format=csv|xml&gzip=true
+  @GetMapping("/batches/{id}/export")
+  public ResponseEntity<?> export(@RequestHeader HttpHeaders headers, @PathVariable Long id,
+                                  @RequestParam(defaultValue="csv") String format,
+                                  @RequestParam(defaultValue="false") boolean gzip) {
+    if (!SecurityHelpers.isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    Format f;
+    try {
+      f = Format.valueOf(format.trim().toUpperCase());
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error","format must be csv or xml"));
+    }
+    var b = batches.findById(id).orElse(null);
+    if (b == null) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+
+    StreamingResponseBody body = out -> exporter.export(b, f, gzip, out);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType(gzip ? "application/gzip" : f.contentType))
+        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+            .filename(exporter.fileName(b, f, gzip)).build().toString())
+        .body(body);
+  }
+}
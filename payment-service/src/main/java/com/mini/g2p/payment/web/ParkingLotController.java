@@ -0,0 +1,103 @@
+package com.mini.g2p.payment.web;
+
+import com.mini.g2p.payment.amqp.RabbitConfig;
+import com.mini.g2p.payment.amqp.StatusRetries;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.GetResponse;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Admin view of the parking-lot queues: peek at parked messages and replay them in bulk
+ * onto their original routing key (with the retry counter reset).
+ */
+@RestController
+@RequestMapping("/payments/admin/parked")
+public class ParkingLotController {
+
+  private final RabbitTemplate rabbit;
+
+  public ParkingLotController(RabbitTemplate rabbit) { this.rabbit = rabbit; }
+
+  private static String queueOf(String flow) {
+    return switch (flow == null ? "" : flow.toLowerCase()) {
+      case "status" -> RabbitConfig.Q_STATUS_PARKING;
+      case "instructions" -> RabbitConfig.Q_INSTR_PARKING;
+      default -> null;
+    };
+  }
+
+  @GetMapping
+  public ResponseEntity<?> peek(@RequestHeader HttpHeaders headers,
+                                @RequestParam(defaultValue="status") String flow,
+                                @RequestParam(defaultValue="50") int limit) {
+    if (!SecurityHelpers.isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    String q = queueOf(flow);
+    if (q == null) return ResponseEntity.badRequest().body(Map.of("error","flow must be status or instructions"));
+
+    // basicGet without ack, then nack everything back: the queue is left as it was
+    List<Map<String,Object>> items = rabbit.execute(ch -> {
+      List<Map<String,Object>> out = new ArrayList<>();
+      long lastTag = -1;
+      for (int i = 0; i < Math.max(1, Math.min(limit, 500)); i++) {
+        GetResponse r = ch.basicGet(q, false);
+        if (r == null) break;
+        lastTag = r.getEnvelope().getDeliveryTag();
+        var h = r.getProps().getHeaders() == null ? Map.<String,Object>of() : r.getProps().getHeaders();
+        var item = new LinkedHashMap<String,Object>();
+        item.put("routingKey", r.getEnvelope().getRoutingKey());
+        item.put("retries", String.valueOf(h.get(StatusRetries.H_RETRIES)));
+        item.put("error", String.valueOf(h.get(StatusRetries.H_ERROR)));
+        item.put("body", new String(r.getBody(), StandardCharsets.UTF_8));
+        out.add(item);
+      }
+      if (lastTag >= 0) ch.basicNack(lastTag, true, true);
+      return out;
+    });
+    long depth = rabbit.execute(ch -> ch.messageCount(q));
+    return ResponseEntity.ok(Map.of("queue", q, "depth", depth, "items", items));
+  }
+
+  @PostMapping("/replay")
+  public ResponseEntity<?> replay(@RequestHeader HttpHeaders headers,
+                                  @RequestParam(defaultValue="status") String flow,
+                                  @RequestParam(defaultValue="1000") int max) {
+    if (!SecurityHelpers.isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    String q = queueOf(flow);
+    if (q == null) return ResponseEntity.badRequest().body(Map.of("error","flow must be status or instructions"));
+    String fallbackRk = q.equals(RabbitConfig.Q_STATUS_PARKING) ? RabbitConfig.RK_STATUS : RabbitConfig.RK_INSTR;
+
+    Integer replayed = rabbit.execute(ch -> {
+      int n = 0;
+      while (n < max) {
+        GetResponse r = ch.basicGet(q, false);
+        if (r == null) break;
+        var h = new HashMap<String,Object>(r.getProps().getHeaders() == null ? Map.of() : r.getProps().getHeaders());
+        String rk = originalRoutingKey(h, fallbackRk);
+        h.remove(StatusRetries.H_RETRIES); h.remove(StatusRetries.H_ERROR); h.remove("x-death");
+        AMQP.BasicProperties props = r.getProps().builder().headers(h).build();
+        ch.basicPublish(RabbitConfig.EXCHANGE, rk, props, r.getBody());
+        ch.waitForConfirmsOrDie(10_000); // only ack the parked copy once the replay is on the broker
+        ch.basicAck(r.getEnvelope().getDeliveryTag(), false);
+        n++;
+      }
+      return n;
+    });
+    return ResponseEntity.ok(Map.of("queue", q, "replayed", replayed));
+  }
+
+  // Our own header first, then what the broker recorded when it dead-lettered the message
+  private static String originalRoutingKey(Map<String,Object> h, String fallback) {
+    Object own = h.get(StatusRetries.H_ORIGINAL_RK);
+    if (own != null) return own.toString();
+    if (h.get("x-death") instanceof List<?> deaths && !deaths.isEmpty()
+        && deaths.get(0) instanceof Map<?,?> d && d.get("routing-keys") instanceof List<?> rks && !rks.isEmpty()) {
+      return rks.get(0).toString();
+    }
+    return fallback;
+  }
+}
@@ -1,14 +1,24 @@
 package com.mini.g2p.payment.web;
 
+import com.mini.g2p.payment.amqp.DispatchThrottle;
 import com.mini.g2p.payment.clients.ProgramClient;
 import com.mini.g2p.payment.domain.*;
 import com.mini.g2p.payment.repo.*;
-import com.mini.g2p.payment.amqp.RabbitConfig;
-import org.springframework.amqp.core.AmqpTemplate;
+import com.mini.g2p.payment.service.BatchCounters;
+import com.mini.g2p.payment.service.BatchCreationService;
+import com.mini.g2p.payment.service.BatchProgressHub;
+import com.mini.g2p.payment.service.ChunkDispatcher;
+import com.mini.g2p.payment.service.DispatchService;
+import com.mini.g2p.payment.service.ReconciliationService;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
-import java.math.BigDecimal;
+import org.springframework.web.reactive.function.client.WebClientException;
 
+import java.math.BigDecimal;
+import java.time.Instant;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -18,94 +28,206 @@ public class PaymentController {
 
   private final PaymentBatchRepository batches;
   private final PaymentInstructionRepository instr;
-  private final AmqpTemplate amqp;
   private final ProgramClient programClient;
+  private final BatchCounters counters;
+  private final DispatchService dispatcher;
+  private final BatchCreationService creator;
+  private final ReconciliationService reconciler;
+  private final BatchProgressHub progress;
+  private final ChunkDispatcher dispatchWindow;
+  private final DispatchThrottle throttle;
 
-  public PaymentController(PaymentBatchRepository b, PaymentInstructionRepository i, AmqpTemplate a, ProgramClient pc) {
-    this.batches=b; this.instr=i; this.amqp=a; this.programClient=pc;
+  public PaymentController(PaymentBatchRepository b, PaymentInstructionRepository i, ProgramClient pc,
+                           BatchCounters c, DispatchService d, BatchCreationService bc, ReconciliationService r,
+                           BatchProgressHub ph, ChunkDispatcher cd, DispatchThrottle dt) {
+    this.batches=b; this.instr=i; this.programClient=pc; this.counters=c; this.dispatcher=d; this.creator=bc;
+    this.reconciler=r; this.progress=ph; this.dispatchWindow=cd; this.throttle=dt;
   }
 
+  private static final int DEFAULT_PAGE = 100;
+  private static final int MAX_PAGE = 1000;
+
   // ---- helpers ----
-  private boolean isAdmin(HttpHeaders headers){
-    String rh=headers.getFirst("X-Auth-Roles");
-    if (rh!=null) for(String r: rh.split("[,\\s]+")) if (r.equalsIgnoreCase("ADMIN")||r.equalsIgnoreCase("ROLE_ADMIN")) return true;
-    String auth=headers.getFirst(HttpHeaders.AUTHORIZATION);
-    if (auth!=null && auth.startsWith("Bearer ")) try{
-      String[] p=auth.substring(7).split("\\."); if (p.length>=2){
-        String json=new String(java.util.Base64.getUrlDecoder().decode(p[1]));
-        if (json.contains("\"roles\"") && (json.contains("ADMIN")||json.contains("ROLE_ADMIN"))) return true;
-      }
-    }catch(Exception ignored){}
-    return false;
-  }
+  private boolean isAdmin(HttpHeaders headers){ return SecurityHelpers.isAdmin(headers); }
 
   // ===== Manual batch =====
-  public record CreateBatchReq(Long programId, Double amount, String currency, List<String> beneficiaries) {}
+  public record CreateBatchReq(Long programId, BigDecimal amount, String currency, List<String> beneficiaries) {}
 
   @PostMapping("/batches")
   public ResponseEntity<?> createManual(@RequestHeader HttpHeaders headers, @RequestBody CreateBatchReq req) {
     if (!isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
-    if (req.programId()==null || req.amount()==null || req.amount()<=0 || req.currency()==null || req.currency().isBlank())
+    if (req.programId()==null || req.amount()==null || req.amount().signum()<=0 || req.currency()==null || req.currency().isBlank())
       return ResponseEntity.badRequest().body(Map.of("error","programId, amount>0, currency required"));
     List<String> bens = (req.beneficiaries()==null? List.<String>of() : req.beneficiaries()).stream()
         .filter(Objects::nonNull).map(String::trim).filter(s -> !s.isBlank()).distinct().collect(Collectors.toList());
     if (bens.isEmpty()) return ResponseEntity.status(409).body(Map.of("error","no beneficiaries"));
 
-    var batch = new PaymentBatch();
-    batch.setProgramId(req.programId());
-    batches.save(batch);
-    for (String u : bens) {
-      var pi = new PaymentInstruction();
-      pi.setBatchId(batch.getId()); pi.setBeneficiaryUsername(u);
-      pi.setAmount(req.amount()); pi.setCurrency(req.currency().trim().toUpperCase());
-      instr.save(pi);
+    String currency = req.currency().trim().toUpperCase();
+    long minor;
+    try {
+      minor = Money.toMinor(req.amount(), currency);
+    } catch (ArithmeticException e) {
+      return ResponseEntity.badRequest().body(Map.of("error","amount has more decimals than " + currency + " allows"));
     }
-    batch.setTotalCount(bens.size()); batches.save(batch);
+    var rows = bens.stream().map(u -> new PaymentInstructionBulkWriter.Row(u, minor, currency)).toList();
+    var batch = creator.create(req.programId(), null, rows);
     return ResponseEntity.ok(Map.of("totalCount",batch.getTotalCount(),"batchId",batch.getId()));
   }
 
 
   @PostMapping("/batches/{id}/dispatch")
-  public ResponseEntity<?> dispatch(@RequestHeader HttpHeaders headers, @PathVariable Long id) {
+  public ResponseEntity<?> dispatch(@RequestHeader HttpHeaders headers, @PathVariable Long id,
+                                    @RequestParam(required=false) Instant startAt) {
     if (!isAdmin(headers)) {
       return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
     }
 
-    var b = batches.findById(id).orElseThrow();
-    b.setStatus(PaymentBatch.Status.PROCESSING);
-    batches.save(b);
+    var b = batches.findById(id).orElse(null);
+    if (b == null) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+
+    // Publishing runs in the background; poll the job for progress
+    DispatchService.DispatchJob job;
+    try {
+      job = dispatcher.start(b, startAt);
+    } catch (IllegalStateException e) {
+      return ResponseEntity.status(409).body(Map.of("error", e.getMessage()));
+    }
+    boolean later = startAt != null && startAt.isAfter(Instant.now());
+    return ResponseEntity.accepted().body(Map.of("status", later ? "SCHEDULED" : "DISPATCHING","jobId",job.getId(),
+        "total",job.getTotal(),"window",dispatchWindow.windowOpen() ? "OPEN" : "CLOSED"));
+  }
+
+  @PostMapping("/batches/{id}/dispatch/pause")
+  public ResponseEntity<?> pauseDispatch(@RequestHeader HttpHeaders headers, @PathVariable Long id) {
+    if (!isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    var b = batches.findById(id).orElse(null);
+    if (b == null) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    dispatcher.pause(b);
+    return ResponseEntity.ok(Map.of("batchId", id, "status", "PAUSED"));
+  }
 
-    instr.findByBatchId(id).forEach(pi -> {
-      BigDecimal amount = toBigDecimal(pi.getAmount()); 
-      var msg = new com.mini.g2p.payment.dto.PaymentInstructionMsg(
-          pi.getId(),
-          b.getProgramId(),
-          pi.getBeneficiaryUsername(), 
-          amount,
-          pi.getCurrency()
-      );
-      amqp.convertAndSend(RabbitConfig.EXCHANGE, RabbitConfig.RK_INSTR, msg);
-      pi.setStatus(PaymentInstruction.Status.SENT);
-      instr.save(pi);
-    });
+  // Lifts a pause and picks a failed dispatch up again at the chunks that did not make it
+  @PostMapping("/batches/{id}/dispatch/resume")
+  public ResponseEntity<?> resumeDispatch(@RequestHeader HttpHeaders headers, @PathVariable Long id) {
+    if (!isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    var b = batches.findById(id).orElse(null);
+    if (b == null) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    return ResponseEntity.accepted().body(Map.of("batchId", id, "requeuedChunks", dispatcher.resume(b)));
+  }
 
-    return ResponseEntity.ok(Map.of("status","DISPATCHED"));
+  // Contracted vs observed publish rate per currency, and whether the dispatch window is open
+  @GetMapping("/dispatch/rates")
+  public Map<String,Object> dispatchRates() {
+    return Map.of("window", dispatchWindow.windowOpen() ? "OPEN" : "CLOSED", "rates", throttle.rates());
   }
 
-  private static BigDecimal toBigDecimal(Object v) {
-    if (v == null) return null;
-    if (v instanceof BigDecimal bd) return bd;
-    return new BigDecimal(v.toString()); // avoids binary double rounding
+  @GetMapping("/batches/{id}/chunks")
+  public ResponseEntity<?> chunks(@PathVariable Long id) {
+    if (!batches.existsById(id)) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    return ResponseEntity.ok(dispatcher.chunks(id));
+  }
+
+  @GetMapping("/dispatch-jobs/{jobId}")
+  public ResponseEntity<?> dispatchJob(@PathVariable String jobId) {
+    return dispatcher.job(jobId).<ResponseEntity<?>>map(ResponseEntity::ok)
+        .orElseGet(() -> ResponseEntity.status(404).body(Map.of("error","dispatch job not found")));
   }
 
   @GetMapping("/batches/{id}")
   public Map<String,Object> get(@PathVariable Long id) {
     var b = batches.findById(id).orElseThrow();
-    return Map.of("batch", b, "instructions", instr.findByBatchId(id));
+    var first = instructionPage(id, null, 0L, DEFAULT_PAGE);
+    var out = new LinkedHashMap<String,Object>();
+    out.put("batch", b); out.put("instructions", first); out.put("nextAfterId", nextAfterId(first, DEFAULT_PAGE));
+    return out;
+  }
+
+  // Keyset pagination: pass the returned nextAfterId back as afterId until it is null
+  @GetMapping("/batches/{id}/instructions")
+  public ResponseEntity<?> instructions(@PathVariable Long id,
+                                        @RequestParam(required=false) List<String> status,
+                                        @RequestParam(defaultValue="0") Long afterId,
+                                        @RequestParam(defaultValue="100") int limit) {
+    if (!batches.existsById(id)) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    Set<PaymentInstruction.Status> statuses = null;
+    if (status!=null && !status.isEmpty()) try {
+      statuses = status.stream().flatMap(s -> Arrays.stream(s.split(","))).map(String::trim).filter(s -> !s.isBlank())
+          .map(s -> PaymentInstruction.Status.valueOf(s.toUpperCase())).collect(Collectors.toCollection(() -> EnumSet.noneOf(PaymentInstruction.Status.class)));
+    } catch (IllegalArgumentException e) {
+      return ResponseEntity.badRequest().body(Map.of("error","invalid status filter: " + status));
+    }
+    int size = Math.max(1, Math.min(limit, MAX_PAGE));
+    var items = instructionPage(id, statuses, afterId, size);
+    var out = new LinkedHashMap<String,Object>();
+    out.put("items", items); out.put("nextAfterId", nextAfterId(items, size));
+    return ResponseEntity.ok(out);
+  }
+
+  // Progress straight from the batch counters, no instruction reads
+  @GetMapping("/batches/{id}/summary")
+  public ResponseEntity<?> summary(@PathVariable Long id) {
+    var b = batches.findById(id).orElse(null);
+    if (b==null) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    int total = b.getTotalCount()==null ? 0 : b.getTotalCount();
+    int success = b.getSuccessCount()==null ? 0 : b.getSuccessCount();
+    int failed = b.getFailedCount()==null ? 0 : b.getFailedCount();
+    return ResponseEntity.ok(Map.of("batchId", b.getId(), "status", b.getStatus(), "totalCount", total,
+        "successCount", success, "failedCount", failed, "openCount", Math.max(0, total - success - failed)));
+  }
+
+  // Dispatch-to-outcome latency percentiles over the batch's resolved instructions
+  @GetMapping("/batches/{id}/latency")
+  public ResponseEntity<?> latency(@PathVariable Long id) {
+    if (!batches.existsById(id)) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    var row = instr.resolutionLatency(id).get(0);
+    var out = new LinkedHashMap<String,Object>();
+    out.put("batchId", id);
+    out.put("resolved", ((Number) row[0]).longValue());
+    String[] names = {"p50Ms", "p90Ms", "p99Ms", "maxMs"};
+    for (int i = 0; i < names.length; i++) out.put(names[i], row[i + 1]==null ? null : Math.round(((Number) row[i + 1]).doubleValue() * 1000));
+    return ResponseEntity.ok(out);
+  }
+
+  // Live counters as server-sent "progress" events, instead of polling the batch
+  @GetMapping("/batches/{id}/progress")
+  public ResponseEntity<?> streamProgress(@PathVariable Long id) {
+    var b = batches.findById(id).orElse(null);
+    if (b==null) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    return ResponseEntity.ok(progress.subscribe(b));
   }
 
   @GetMapping("/batches")
-  public List<PaymentBatch> list(){ return batches.findAll(); }
+  public ResponseEntity<List<PaymentBatch>> list(@RequestParam(defaultValue="0") int page,
+                                                 @RequestParam(defaultValue="50") int size) {
+    var p = batches.findAll(PageRequest.of(Math.max(0, page), Math.max(1, Math.min(size, MAX_PAGE)),
+        Sort.by(Sort.Direction.DESC, "createdAt", "id")));
+    return ResponseEntity.ok().header("X-Total-Count", String.valueOf(p.getTotalElements())).body(p.getContent());
+  }
+
+  private List<PaymentInstruction> instructionPage(Long batchId, Set<PaymentInstruction.Status> statuses, Long afterId, int size) {
+    return statuses==null
+        ? instr.findByBatchIdAndIdGreaterThanOrderByIdAsc(batchId, afterId, Limit.of(size))
+        : instr.findByBatchIdAndStatusInAndIdGreaterThanOrderByIdAsc(batchId, statuses, afterId, Limit.of(size));
+  }
+
+  private static Long nextAfterId(List<PaymentInstruction> items, int size) {
+    return items.size() < size ? null : items.get(items.size() - 1).getId();
+  }
+
+  // Repair for counter drift: recount success/failed from the instructions table
+  @PostMapping("/batches/{id}/recount")
+  public ResponseEntity<?> recount(@RequestHeader HttpHeaders headers, @PathVariable Long id) {
+    if (!isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    if (!batches.existsById(id)) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    return ResponseEntity.ok(counters.recount(id));
+  }
+
+  // Runs the SENT-instruction reconciliation now instead of waiting for the schedule
+  @PostMapping("/reconcile")
+  public ResponseEntity<?> reconcile(@RequestHeader HttpHeaders headers) {
+    if (!isAdmin(headers)) return ResponseEntity.status(HttpStatus.FORBIDDEN).body(Map.of("error","ADMIN only"));
+    return ResponseEntity.ok(reconciler.reconcile());
+  }
 
   // ===== Batch from cycle (APPROVED entitlements) =====
   @PostMapping("/batches/from-cycle")
@@ -116,28 +238,29 @@ public class PaymentController {
     if (ci==null) return ResponseEntity.status(404).body(Map.of("error","cycle not found"));
     if (!Objects.equals(ci.programId(), programId)) return ResponseEntity.status(409).body(Map.of("error","cycle.programId mismatch"));
 
-    var existing = batches.findAll().stream().filter(b -> Objects.equals(b.getCycleId(), cycleId)).findFirst();
+    var existing = batches.findFirstByCycleId(cycleId);
     if (existing.isPresent()) {
       var b = existing.get();
       return ResponseEntity.ok(Map.of("totalCount", b.getTotalCount(), "batchId", b.getId(), "existing", true));
     }
 
-    var approved = programClient.getApprovedEntitlements(cycleId);
-    if (approved==null || approved.isEmpty()) return ResponseEntity.status(409).body(Map.of("error","no approved entitlements"));
-
-    var batch = new PaymentBatch(); 
-    batch.setProgramId(programId); batch.setCycleId(cycleId);
-    batches.save(batch);
-
-    approved.forEach(e -> {
-      var pi = new PaymentInstruction();
-      pi.setBatchId(batch.getId());
-      pi.setBeneficiaryUsername(e.username());
-      pi.setAmount(e.amount());
-      pi.setCurrency(e.currency()!=null ? e.currency().trim().toUpperCase() : "TND");
-      instr.save(pi);
-    });
-    batch.setTotalCount(approved.size()); batches.save(batch);
+    BatchCreationService.ForCycle created;
+    try {
+      created = creator.createForCycle(programId, cycleId, sink ->
+          programClient.forEachApprovedPage(cycleId, page -> sink.accept(page.stream()
+              .map(e -> {
+                String cur = e.currency()!=null ? e.currency().trim().toUpperCase() : "TND";
+                long minor = e.amountMinor()!=null ? e.amountMinor() : Money.toMinorRounded(e.amount(), cur);
+                return new PaymentInstructionBulkWriter.Row(e.username(), minor, cur);
+              })
+              .toList())));
+    } catch (WebClientException e) {
+      return ResponseEntity.status(HttpStatus.BAD_GATEWAY).body(Map.of("error","entitlements fetch failed: " + e.getMessage()));
+    }
+    if (created.batch()==null) return ResponseEntity.status(409).body(Map.of("error","no approved entitlements"));
+    var batch = created.batch();
+    if (created.existing())
+      return ResponseEntity.ok(Map.of("totalCount", batch.getTotalCount(), "batchId", batch.getId(), "existing", true));
     return ResponseEntity.ok(Map.of("totalCount", batch.getTotalCount(), "batchId", batch.getId()));
   }
 }
\ No newline at end of file
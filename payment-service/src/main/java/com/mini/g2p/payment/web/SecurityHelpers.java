@@ -0,0 +1,20 @@
+package com.mini.g2p.payment.web;
+
+import org.springframework.http.HttpHeaders;
+
+public final class SecurityHelpers {
+  private SecurityHelpers(){}
+
+  public static boolean isAdmin(HttpHeaders headers){
+    String rh=headers.getFirst("X-Auth-Roles");
+    if (rh!=null) for(String r: rh.split("[,\\s]+")) if (r.equalsIgnoreCase("ADMIN")||r.equalsIgnoreCase("ROLE_ADMIN")) return true;
+    String auth=headers.getFirst(HttpHeaders.AUTHORIZATION);
+    if (auth!=null && auth.startsWith("Bearer ")) try{
+      String[] p=auth.substring(7).split("\\."); if (p.length>=2){
+        String json=new String(java.util.Base64.getUrlDecoder().decode(p[1]));
+        if (json.contains("\"roles\"") && (json.contains("ADMIN")||json.contains("ROLE_ADMIN"))) return true;
+      }
+    }catch(Exception ignored){}
+    return false;
+  }
+}
@@ -0,0 +1,40 @@
+package com.mini.g2p.payment.web;
+
+import com.mini.g2p.payment.repo.PaymentBatchRepository;
+import com.mini.g2p.payment.service.BatchTotals;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * Counts and amounts by status and currency, read from the payment_batch_totals cache
+ * instead of the instruction rows. Amounts come both as decimals and as minor units.
+ */
+@RestController
+@RequestMapping("/payments")
+public class TotalsController {
+
+  private final PaymentBatchRepository batches;
+  private final BatchTotals totals;
+
+  public TotalsController(PaymentBatchRepository batches, BatchTotals totals) {
+    this.batches = batches; this.totals = totals;
+  }
+
+  @GetMapping("/batches/{id}/totals")
+  public ResponseEntity<?> batch(@PathVariable Long id) {
+    if (!batches.existsById(id)) return ResponseEntity.status(404).body(Map.of("error","batch not found"));
+    return ResponseEntity.ok(Map.of("batchId", id, "totals", totals.forBatch(id)));
+  }
+
+  @GetMapping("/programs/{programId}/totals")
+  public ResponseEntity<?> program(@PathVariable Long programId) {
+    return ResponseEntity.ok(Map.of("programId", programId, "totals", totals.forProgram(programId)));
+  }
+
+  @GetMapping("/cycles/{cycleId}/totals")
+  public ResponseEntity<?> cycle(@PathVariable Long cycleId) {
+    return ResponseEntity.ok(Map.of("cycleId", cycleId, "totals", totals.forCycle(cycleId)));
+  }
+}
@@ -0,0 +1,89 @@
+package com.mini.g2p.payment.amqp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mini.g2p.payment.dto.PaymentInstructionMsg;
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkEnvelopeTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+
+  private static PaymentInstructionMsg instr(long id) {
+    return new PaymentInstructionMsg(id, 3L, "user" + id, new BigDecimal("12.34"), "XOF", 1234L, 1);
+  }
+
+  @Test
+  void bulkRoundTrip() throws IOException {
+    var items = List.of(instr(1), instr(2), instr(3));
+    var m = BulkEnvelope.encode(mapper, items);
+
+    assertTrue(BulkEnvelope.isBulk(m));
+    assertEquals(3, (Integer) m.getMessageProperties().getHeader(BulkEnvelope.H_BULK));
+    assertEquals(BulkEnvelope.ENCODING, m.getMessageProperties().getContentEncoding());
+    assertEquals(items, BulkEnvelope.decode(mapper, m, PaymentInstructionMsg.class));
+  }
+
+  @Test
+  void emptyBulkRoundTrip() throws IOException {
+    var m = BulkEnvelope.encode(mapper, List.of());
+    assertTrue(BulkEnvelope.isBulk(m));
+    assertEquals(List.of(), BulkEnvelope.decode(mapper, m, PaymentStatusMsg.class));
+  }
+
+  @Test
+  void plainMessageDecodesToOneRecord() throws IOException {
+    var status = new PaymentStatusMsg(9L, "FAILED", "BANK-9", "INSUFFICIENT_FUNDS");
+    var m = new Message(mapper.writeValueAsBytes(status), new MessageProperties());
+
+    assertFalse(BulkEnvelope.isBulk(m));
+    assertEquals(List.of(status), BulkEnvelope.decode(mapper, m, PaymentStatusMsg.class));
+  }
+
+  @Test
+  void decodesTheWireFormatMockbankWrites() throws IOException {
+    // gzip'd JSON array + x-g2p-bulk header, built by hand rather than through encode()
+    var json = "[{\"instructionId\":5,\"status\":\"SUCCESS\",\"bankRef\":\"B5\",\"reason\":null}]";
+    var bytes = new ByteArrayOutputStream();
+    try (var gz = new GZIPOutputStream(bytes)) { gz.write(json.getBytes(StandardCharsets.UTF_8)); }
+    var props = new MessageProperties();
+    props.setHeader(BulkEnvelope.H_BULK, 1);
+
+    assertEquals(List.of(new PaymentStatusMsg(5L, "SUCCESS", "B5", null)),
+        BulkEnvelope.decode(mapper, new Message(bytes.toByteArray(), props), PaymentStatusMsg.class));
+  }
+
+  @Test
+  void singleSplitsOutOnePlainRecordKeepingHeaders() throws IOException {
+    var bulk = BulkEnvelope.encode(mapper, List.of(instr(1), instr(2)));
+    bulk.getMessageProperties().setHeader("x-trace", "t-1");
+    var one = BulkEnvelope.single(mapper, instr(2), bulk);
+
+    assertFalse(BulkEnvelope.isBulk(one));
+    assertNull(one.getMessageProperties().getContentEncoding());
+    assertEquals("t-1", one.getMessageProperties().getHeader("x-trace"));
+    assertEquals(List.of(instr(2)), BulkEnvelope.decode(mapper, one, PaymentInstructionMsg.class));
+  }
+
+  @Test
+  void unreadablePayloadsFail() {
+    var notGzip = new MessageProperties();
+    notGzip.setHeader(BulkEnvelope.H_BULK, 2);
+    assertThrows(IOException.class, () ->
+        BulkEnvelope.decode(mapper, new Message("[{}]".getBytes(StandardCharsets.UTF_8), notGzip), PaymentStatusMsg.class));
+
+    var notJson = new Message("garbage".getBytes(StandardCharsets.UTF_8), new MessageProperties());
+    assertThrows(IOException.class, () -> BulkEnvelope.decode(mapper, notJson, PaymentStatusMsg.class));
+  }
+}
@@ -0,0 +1,92 @@
+package com.mini.g2p.payment.amqp;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DispatchThrottleTest {
+
+  private static final long MS = 1_000_000L;
+
+  private static DispatchRateProps.Limit limit(double perSecond, int burst) {
+    var l = new DispatchRateProps.Limit();
+    l.setPerSecond(perSecond);
+    l.setBurst(burst);
+    return l;
+  }
+
+  private static DispatchThrottle throttle(Map<String, DispatchRateProps.Limit> limits) {
+    var props = new DispatchRateProps();
+    props.setLimits(new LinkedHashMap<>(limits));
+    return new DispatchThrottle(props, new SimpleMeterRegistry());
+  }
+
+  @Test
+  void reserveTakesTokensOnlyWhenAllAreThere() {
+    var b = throttle(Map.of()).new Bucket("TND", limit(50, 100));
+    long t0 = System.nanoTime();
+    assertEquals(0, b.reserve(100, t0));                 // full bucket
+    assertEquals(200 * MS, b.reserve(10, t0), MS);       // empty: 10 tokens at 50/s
+    assertEquals(1000 * MS, b.reserve(50, t0), MS);      // the refused request took nothing
+    assertEquals(0, b.reserve(10, t0 + 200 * MS));
+    assertEquals(200 * MS, b.reserve(10, t0 + 200 * MS), MS);
+  }
+
+  @Test
+  void refillIsCappedAtTheBurst() {
+    var b = throttle(Map.of()).new Bucket("TND", limit(50, 100));
+    long t0 = System.nanoTime();
+    assertEquals(0, b.reserve(100, t0));
+    assertEquals(0, b.reserve(100, t0 + 60_000 * MS));   // a minute idle refills one burst, not 3000
+    assertTrue(b.reserve(1, t0 + 60_000 * MS) > 0);
+  }
+
+  @Test
+  void moreThanABurstIsGrantedFromAFullBucketThenPaidBack() {
+    var b = throttle(Map.of()).new Bucket("TND", limit(50, 100));
+    long t0 = System.nanoTime();
+    assertEquals(0, b.reserve(150, t0));
+    assertEquals(1020 * MS, b.reserve(1, t0), MS);       // 50 in debt + the one asked for
+  }
+
+  @Test
+  void burstDefaultsToOneSecondOfRateAndZeroRateIsUnlimited() {
+    var t = throttle(Map.of());
+    var oneSecond = t.new Bucket("TND", limit(20, 0));
+    var unlimited = t.new Bucket("EUR", limit(0, 0));
+    long t0 = System.nanoTime();
+    assertEquals(0, oneSecond.reserve(20, t0));
+    assertTrue(oneSecond.reserve(1, t0) > 0);
+    for (int i = 0; i < 5; i++) assertEquals(0, unlimited.reserve(1_000_000, t0));
+  }
+
+  @Test
+  void tryAcquireGivesBackWhatItTookWhenAnotherCurrencyIsShort() {
+    var t = throttle(Map.of("TND", limit(1, 100), "EUR", limit(1, 10)));
+    Map<String, Integer> window = new LinkedHashMap<>();
+    window.put("TND", 100);
+    window.put("EUR", 10);
+    assertEquals(0, t.tryAcquire(window));               // both buckets full
+    assertTrue(t.tryAcquire(Map.of("EUR", 10)) > 0);
+
+    Map<String, Integer> mixed = new LinkedHashMap<>();
+    mixed.put("TND", 1);
+    mixed.put("EUR", 10);
+    assertTrue(t.tryAcquire(mixed) > 0);
+    // TND had been emptied by the first window; had the refused one kept its token, 1 more would be 2 s away
+    assertTrue(t.tryAcquire(Map.of("TND", 1)) <= 1000 * MS);
+  }
+
+  @Test
+  void maxWindowIsTheSmallestLimitedBurst() {
+    assertEquals(500, throttle(Map.of()).maxWindow(500));
+    assertEquals(500, throttle(Map.of("default", limit(0, 50))).maxWindow(500));   // unlimited: burst irrelevant
+    assertEquals(200, throttle(Map.of("default", limit(100, 200))).maxWindow(500));
+    assertEquals(50, throttle(Map.of("default", limit(100, 200), "EUR", limit(50, 0))).maxWindow(500));
+    assertEquals(300, throttle(Map.of("TND", limit(1000, 0))).maxWindow(300));
+  }
+}
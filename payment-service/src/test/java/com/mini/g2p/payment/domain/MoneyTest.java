@@ -0,0 +1,75 @@
+package com.mini.g2p.payment.domain;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Same cases as program-catalog-service's MoneyTest: both services must convert amounts identically. */
+class MoneyTest {
+
+  @Test
+  void minorDigitsFollowTheCurrency() {
+    assertEquals(3, Money.fractionDigits("TND"));
+    assertEquals(2, Money.fractionDigits("EUR"));
+    assertEquals(0, Money.fractionDigits("JPY"));
+    assertEquals(3, Money.fractionDigits(" tnd "));
+    assertEquals(2, Money.fractionDigits("XYZ1"));
+    assertEquals(2, Money.fractionDigits(null));
+  }
+
+  @Test
+  void toMinorIsExact() {
+    assertEquals(150_000L, Money.toMinor(new BigDecimal("150"), "TND"));
+    assertEquals(150_125L, Money.toMinor(new BigDecimal("150.125"), "TND"));
+    assertEquals(1_999L, Money.toMinor(new BigDecimal("19.99"), "EUR"));
+    assertEquals(1_500L, Money.toMinor(new BigDecimal("1500"), "JPY"));
+    assertEquals(1_500L, Money.toMinor(new BigDecimal("1500.000"), "JPY")); // trailing zeros are not precision
+  }
+
+  @Test
+  void toMinorRejectsAmountsFinerThanTheCurrency() {
+    assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("150.1255"), "TND"));
+    assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("19.999"), "EUR"));
+    assertThrows(ArithmeticException.class, () -> Money.toMinor(new BigDecimal("0.5"), "JPY"));
+    assertThrows(ArithmeticException.class, () -> Money.of(new BigDecimal("1.001"), "USD"));
+  }
+
+  @Test
+  void toMinorRoundedRoundsHalfEvenToTheCurrency() {
+    assertEquals(150_124L, Money.toMinorRounded(new BigDecimal("150.1245"), "TND"));
+    assertEquals(150_126L, Money.toMinorRounded(new BigDecimal("150.1255"), "TND"));
+    assertEquals(2L, Money.toMinorRounded(new BigDecimal("2.5"), "JPY"));
+    assertEquals(4L, Money.toMinorRounded(new BigDecimal("3.5"), "JPY"));
+    // what a double like 0.1 + 0.2 carries into the legacy column
+    assertEquals(30L, Money.toMinorRounded(new BigDecimal(0.1 + 0.2), "EUR"));
+  }
+
+  @Test
+  void legacyMinorRoundsTheDecimalTheDoubleStoodFor() {
+    assertEquals(150_124L, Money.legacyMinor(150.1245, "TND")); // half-even, as toMinorRounded; SQL round() gave 150_125
+    assertEquals(12L, Money.legacyMinor(0.125, "EUR"));
+    assertEquals(30L, Money.legacyMinor(0.1 + 0.2, "EUR"));
+    assertEquals(1_999L, Money.legacyMinor(19.99, "EUR"));
+    assertEquals(2L, Money.legacyMinor(2.5, "JPY"));
+    assertEquals(-12L, Money.legacyMinor(-0.125, "EUR"));
+    assertEquals(15_000L, Money.legacyMinor(150, null)); // unknown currency: 2 digits
+  }
+
+  @Test
+  void toDecimalUsesTheCurrencyScale() {
+    assertEquals(new BigDecimal("150.000"), Money.toDecimal(150_000L, "TND"));
+    assertEquals(new BigDecimal("19.99"), Money.toDecimal(1_999L, "EUR"));
+    assertEquals(new BigDecimal("1500"), Money.toDecimal(1_500L, "JPY"));
+    assertNull(Money.toDecimal(null, "TND"));
+  }
+
+  @Test
+  void plusIsExactAndRefusesMixedCurrencies() {
+    assertEquals(Money.ofMinor(300_250L, "TND"),
+        Money.of(new BigDecimal("150.125"), "TND").plus(Money.of(new BigDecimal("150.125"), "tnd")));
+    assertThrows(IllegalArgumentException.class, () -> Money.ofMinor(1, "TND").plus(Money.ofMinor(1, "EUR")));
+    assertThrows(ArithmeticException.class, () -> Money.ofMinor(Long.MAX_VALUE, "TND").plus(Money.ofMinor(1, "TND")));
+  }
+}
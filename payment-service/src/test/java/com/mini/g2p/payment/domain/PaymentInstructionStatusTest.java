@@ -0,0 +1,32 @@
+package com.mini.g2p.payment.domain;
+
+import com.mini.g2p.payment.domain.PaymentInstruction.Status;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PaymentInstructionStatusTest {
+
+  @Test
+  void openInstructionsTakeEitherOutcome() {
+    for (var from : new Status[] { Status.PENDING, Status.SENT }) {
+      assertTrue(from.canMoveTo(Status.SUCCESS), from + " -> SUCCESS");
+      assertTrue(from.canMoveTo(Status.FAILED), from + " -> FAILED");
+      assertFalse(from.canMoveTo(Status.PENDING), from + " -> PENDING");
+      assertFalse(from.canMoveTo(Status.SENT), from + " -> SENT");
+    }
+  }
+
+  @Test
+  void successIsFinal() {
+    for (var next : Status.values()) assertFalse(Status.SUCCESS.canMoveTo(next), "SUCCESS -> " + next);
+  }
+
+  @Test
+  void aLateSuccessStillCorrectsAFailure() {
+    assertTrue(Status.FAILED.canMoveTo(Status.SUCCESS));
+    assertTrue(Status.FAILED.canMoveTo(Status.FAILED));
+    assertFalse(Status.FAILED.canMoveTo(Status.SENT));
+    assertFalse(Status.FAILED.canMoveTo(Status.PENDING));
+  }
+}
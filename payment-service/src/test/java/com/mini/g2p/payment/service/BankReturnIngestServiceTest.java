@@ -0,0 +1,105 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class BankReturnIngestServiceTest {
+
+  private final List<PaymentStatusMsg> applied = new ArrayList<>();
+  private BankReturnIngestService ingest;
+
+  @BeforeEach
+  void setUp() {
+    var applier = mock(StatusApplier.class);
+    // ids from 900 up are unknown to the ledger
+    when(applier.apply(anyList())).thenAnswer(inv -> {
+      List<PaymentStatusMsg> window = inv.getArgument(0);
+      applied.addAll(window);
+      var unmatched = window.stream().map(PaymentStatusMsg::instructionId).filter(id -> id >= 900).toList();
+      return new StatusApplier.Result(window.size() - unmatched.size(), 0, 0, unmatched,
+          List.of(), List.of(), Map.of(), Map.of());
+    });
+    ingest = new BankReturnIngestService(applier, 2, 1000);
+  }
+
+  @AfterEach
+  void tearDown() { ingest.stop(); }
+
+  private BankReturnIngestService.IngestJob run(String csv) throws Exception {
+    var job = ingest.submit("returns.csv", new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    for (int i = 0; i < 500 && job.getState() == BankReturnIngestService.JobState.RUNNING; i++) Thread.sleep(10);
+    assertEquals(BankReturnIngestService.JobState.DONE, job.getState(), job.getError());
+    return job;
+  }
+
+  @Test
+  void fileWithoutHeaderUsesTheDefaultColumns() throws Exception {
+    var job = run("1,SUCCESS,B1,\n2,FAILED,B2,ACCOUNT_CLOSED\n3,success,B3\n");
+
+    assertEquals(List.of(new PaymentStatusMsg(1L, "SUCCESS", "B1", null),
+        new PaymentStatusMsg(2L, "FAILED", "B2", "ACCOUNT_CLOSED"),
+        new PaymentStatusMsg(3L, "SUCCESS", "B3", null)), applied);
+    assertEquals(3, job.getApplied());
+    assertEquals(3, job.getLines());
+    assertEquals(0, job.getMalformedCount());
+  }
+
+  @Test
+  void headerMapsColumnsInAnyOrder() throws Exception {
+    run("bank_ref,fail_reason,status,instruction_id\nB1,,ACSC,1\nB2,AC04,RJCT,2\n");
+
+    assertEquals(List.of(new PaymentStatusMsg(1L, "SUCCESS", "B1", null),
+        new PaymentStatusMsg(2L, "FAILED", "B2", "AC04")), applied);
+  }
+
+  @Test
+  void quotedFieldsKeepCommasAndQuotes() throws Exception {
+    run("1,FAILED,\"B,1\",\"closed, per \"\"KYC\"\" review\"\n");
+
+    assertEquals(List.of(new PaymentStatusMsg(1L, "FAILED", "B,1", "closed, per \"KYC\" review")), applied);
+  }
+
+  @Test
+  void unknownCodesAndMalformedRowsAreReported() throws Exception {
+    var job = run("""
+        # nightly return file
+        1,SUCCESS,B1,
+        2,PDNG,B2,
+        x3,FAILED,B3,
+        ,SUCCESS,B4,
+
+        5,FAILED,B5,AC01
+        """);
+
+    assertEquals(List.of(1L, 5L), applied.stream().map(PaymentStatusMsg::instructionId).toList());
+    assertEquals(3, job.getMalformedCount());
+    assertEquals(List.of("3: 2,PDNG,B2,", "4: x3,FAILED,B3,", "5: ,SUCCESS,B4,"), job.getMalformed());
+  }
+
+  @Test
+  void unknownInstructionsAreReportedAsUnmatched() throws Exception {
+    var job = run("1,SUCCESS,B1,\n901,SUCCESS,B901,\n2,FAILED,B2,\n902,FAILED,B902,\n903,SUCCESS,B903,\n");
+
+    assertEquals(2, job.getApplied());
+    assertEquals(3, job.getUnmatchedCount());
+    assertEquals(List.of(901L, 902L, 903L), job.getUnmatched());
+  }
+
+  @Test
+  void splitCsvHandlesEmptyAndQuotedFields() {
+    assertEquals(List.of("1", "", "a,b", ""), BankReturnIngestService.splitCsv("1,,\"a,b\","));
+    assertEquals(List.of("say \"hi\""), BankReturnIngestService.splitCsv("\"say \"\"hi\"\"\""));
+  }
+}
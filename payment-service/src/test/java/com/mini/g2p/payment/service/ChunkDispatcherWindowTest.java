@@ -0,0 +1,50 @@
+package com.mini.g2p.payment.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChunkDispatcherWindowTest {
+
+  private static boolean open(String start, String end, String now) {
+    return ChunkDispatcher.inWindow(start == null ? null : LocalTime.parse(start),
+        end == null ? null : LocalTime.parse(end), LocalTime.parse(now));
+  }
+
+  @Test
+  void noWindowIsAlwaysOpen() {
+    assertTrue(open(null, null, "03:00"));
+    assertTrue(open("08:00", null, "03:00"));
+    assertTrue(open("08:00", "08:00", "03:00"));
+  }
+
+  @Test
+  void sameDayWindowIncludesStartAndExcludesEnd() {
+    assertFalse(open("08:00", "18:00", "07:59:59"));
+    assertTrue(open("08:00", "18:00", "08:00"));
+    assertTrue(open("08:00", "18:00", "12:00"));
+    assertTrue(open("08:00", "18:00", "17:59:59"));
+    assertFalse(open("08:00", "18:00", "18:00"));
+    assertFalse(open("08:00", "18:00", "23:00"));
+  }
+
+  @Test
+  void windowCrossingMidnight() {
+    assertFalse(open("22:00", "04:00", "21:59:59"));
+    assertTrue(open("22:00", "04:00", "22:00"));
+    assertTrue(open("22:00", "04:00", "23:59:59"));
+    assertTrue(open("22:00", "04:00", "00:00"));
+    assertTrue(open("22:00", "04:00", "03:59:59"));
+    assertFalse(open("22:00", "04:00", "04:00"));
+    assertFalse(open("22:00", "04:00", "12:00"));
+  }
+
+  @Test
+  void windowEndingAtMidnight() {
+    assertTrue(open("22:00", "00:00", "23:30"));
+    assertFalse(open("22:00", "00:00", "00:00"));
+    assertFalse(open("22:00", "00:00", "10:00"));
+  }
+}
@@ -0,0 +1,100 @@
+package com.mini.g2p.payment.service;
+
+import com.mini.g2p.payment.dto.PaymentStatusMsg;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class StatusDeduplicatorTest {
+
+  private NamedParameterJdbcTemplate jdbc;
+  private SimpleMeterRegistry meters;
+  private StatusDeduplicator dedup;
+  private final List<String[]> processed = new ArrayList<>(); // payment_status_processed rows: instructionId, bankRef
+
+  @BeforeEach
+  void setUp() throws Exception {
+    jdbc = mock(NamedParameterJdbcTemplate.class);
+    when(jdbc.getJdbcTemplate()).thenReturn(mock(JdbcTemplate.class));
+    doAnswer(inv -> {
+      RowCallbackHandler h = inv.getArgument(2);
+      for (var row : processed) {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getLong(1)).thenReturn(Long.parseLong(row[0]));
+        when(rs.getString(2)).thenReturn(row[1]);
+        h.processRow(rs);
+      }
+      return null;
+    }).when(jdbc).query(anyString(), anyMap(), any(RowCallbackHandler.class));
+    meters = new SimpleMeterRegistry();
+    dedup = new StatusDeduplicator(jdbc, meters, 1000, 30);
+  }
+
+  private static PaymentStatusMsg msg(long id, String bankRef) { return new PaymentStatusMsg(id, "SUCCESS", bankRef, null); }
+
+  private double duplicates() { return meters.get("g2p.payments.status.duplicates").counter().count(); }
+
+  @Test
+  void redeliveryOfAnAppliedStatusIsDropped() {
+    var first = dedup.filterNew(List.of(msg(1, "BANK-1")));
+    assertEquals(1, first.size());
+    dedup.remember(first);
+
+    assertEquals(List.of(), dedup.filterNew(List.of(msg(1, "BANK-1"))));
+    assertEquals(1, duplicates());
+  }
+
+  @Test
+  void redeliveryIsDroppedFromTheProcessedTableAfterTheCacheWasLost() {
+    processed.add(new String[] { "7", "BANK-7" });
+    assertEquals(List.of(msg(8, "BANK-8")), dedup.filterNew(List.of(msg(7, "BANK-7"), msg(8, "BANK-8"))));
+    // the hit is cached: the next redelivery stops before the database
+    processed.clear();
+    assertEquals(List.of(), dedup.filterNew(List.of(msg(7, "BANK-7"))));
+  }
+
+  @Test
+  void copiesWithinOneWindowCollapseToOne() {
+    var out = dedup.filterNew(List.of(msg(2, "BANK-2"), msg(2, "BANK-2"), msg(3, "BANK-3")));
+    assertEquals(List.of(msg(2, "BANK-2"), msg(3, "BANK-3")), out);
+    assertEquals(1, duplicates());
+  }
+
+  @Test
+  void anotherBankRefForTheSameInstructionIsNotADuplicate() {
+    dedup.remember(List.of(msg(4, "BANK-4a")));
+    assertEquals(1, dedup.filterNew(List.of(msg(4, "BANK-4b"))).size());
+  }
+
+  @Test
+  void aStatusWithoutBankRefIsNeverDeduplicated() {
+    var noRef = new PaymentStatusMsg(5L, "FAILED", null, "BANK_TIMEOUT");
+    dedup.remember(List.of(noRef));
+    dedup.record(List.of(noRef));
+    verify(jdbc.getJdbcTemplate(), never()).batchUpdate(anyString(), anyCollection(), anyInt(), any());
+
+    var out = dedup.filterNew(List.of(noRef, noRef));
+    assertEquals(2, out.size());
+    assertEquals(0, duplicates());
+    verify(jdbc, never()).query(anyString(), anyMap(), any(RowCallbackHandler.class)); // nothing to look up
+  }
+
+  @Test
+  void messagesWithoutInstructionIdAreDropped() {
+    var out = dedup.filterNew(List.of(new PaymentStatusMsg(null, "SUCCESS", "BANK-X", null), msg(6, "BANK-6")));
+    assertEquals(List.of(msg(6, "BANK-6")), out);
+    verify(jdbc).query(anyString(), eq(Map.of("ids", List.of(6L))), any(RowCallbackHandler.class));
+  }
+}
@@ -4,6 +4,7 @@ import com.mini.g2p.programcatalog.clients.EnrollmentClient;
 import com.mini.g2p.programcatalog.domain.CycleState;
 import com.mini.g2p.programcatalog.domain.Entitlement;
 import com.mini.g2p.programcatalog.domain.EntitlementState;
+import com.mini.g2p.programcatalog.domain.Money;
 import com.mini.g2p.programcatalog.repo.EntitlementRepository;
 import com.mini.g2p.programcatalog.repo.ProgramCycleRepository;
 import org.springframework.http.ResponseEntity;
@@ -12,6 +13,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.server.ResponseStatusException;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -36,7 +38,7 @@ public class EntitlementController {
     return entRepo.findByCycleIdOrderByIdAsc(cycleId);
   }
 
-  public record GenerateItem(String username, Double amount, String currency,
+  public record GenerateItem(String username, BigDecimal amount, String currency,
                              LocalDate validFrom, LocalDate validUntil) {}
   public record GenerateReq(List<GenerateItem> items) {}
 
@@ -58,8 +60,11 @@ public class EntitlementController {
       e.setProgramId(programId);
       e.setCycleId(cycleId);
       e.setBeneficiaryUsername(it.username());
-      e.setAmount(it.amount());
-      e.setCurrency(it.currency());
+      try {
+        e.setMoney(it.amount(), it.currency());
+      } catch (ArithmeticException ex) {
+        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "amount has more decimals than " + it.currency() + " allows");
+      }
       e.setValidFrom(it.validFrom());
       e.setValidUntil(it.validUntil());
       e.setState(c.getState() == CycleState.APPROVED ? EntitlementState.APPROVED : EntitlementState.DRAFT);
@@ -68,7 +73,7 @@ public class EntitlementController {
     return out;
   }
 
-  public record PrepareReq(Double amount, String currency,
+  public record PrepareReq(BigDecimal amount, String currency,
                            LocalDate validFrom, LocalDate validUntil) {}
 
   @PostMapping("/programs/{programId}/cycles/{cycleId}/entitlements/prepare-from-enrollments")
@@ -82,6 +87,12 @@ public class EntitlementController {
           .body(Map.of("error", "cycle not found"));
     }
 
+    if (req.amount() != null) try {
+      Money.toMinor(req.amount(), req.currency());
+    } catch (ArithmeticException ex) {
+      return ResponseEntity.badRequest().body(Map.of("error", "amount has more decimals than " + req.currency() + " allows"));
+    }
+
     var usernames = enrollmentClient.getApprovedUsernames(programId, headers);
     if (usernames == null || usernames.isEmpty()) {
       return ResponseEntity.status(HttpStatus.CONFLICT)
@@ -99,8 +110,7 @@ public class EntitlementController {
       e.setProgramId(programId);
       e.setCycleId(cycleId);
       e.setBeneficiaryUsername(u);
-      e.setAmount(req.amount());
-      e.setCurrency(req.currency());
+      e.setMoney(req.amount(), req.currency());
       e.setValidFrom(req.validFrom());
       e.setValidUntil(req.validUntil());
       e.setState(c.getState() == CycleState.APPROVED ? EntitlementState.APPROVED : EntitlementState.DRAFT);
@@ -154,7 +164,20 @@ public class EntitlementController {
     cycles.findById(cycleId).orElseThrow();
     return entRepo.findByCycleIdAndState(cycleId, EntitlementState.APPROVED).stream()
         .map(e -> new com.mini.g2p.programcatalog.dto.EntitlementDtos.ApprovedEntitlement(
-            e.getId(), e.getBeneficiaryUsername(), e.getAmount(), e.getCurrency()))
+            e.getId(), e.getBeneficiaryUsername(), e.getAmountMinor(), e.getCurrency()))
         .toList();
   }
-}
\ No newline at end of file
+
+  // Keyset-paged variant for large cycles: pass back nextAfterId until it is null
+  @GetMapping("/internal/entitlements/approved/page")
+  public com.mini.g2p.programcatalog.dto.EntitlementDtos.ApprovedEntitlementPage
+  approvedPageForCycle(@RequestParam Long cycleId,
+                       @RequestParam(defaultValue = "0") Long afterId,
+                       @RequestParam(defaultValue = "1000") int limit) {
+    if (afterId == 0) cycles.findById(cycleId).orElseThrow();
+    int size = Math.max(1, Math.min(limit, 5000));
+    var items = entRepo.findPage(cycleId, EntitlementState.APPROVED, afterId, org.springframework.data.domain.Limit.of(size));
+    Long next = items.size() < size ? null : items.get(items.size() - 1).id();
+    return new com.mini.g2p.programcatalog.dto.EntitlementDtos.ApprovedEntitlementPage(items, next);
+  }
+}
@@ -1,12 +1,14 @@
 package com.mini.g2p.programcatalog.domain;
 
 import jakarta.persistence.*;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.Instant;
 import java.util.UUID;
 
 @Entity
 @Table(name="entitlements",
+  indexes = @Index(name="ix_entitlement_cycle_state_id", columnList="cycleId,state,id"),
   uniqueConstraints = {
     @UniqueConstraint(name="ux_entitlement_code", columnNames="code"),
     @UniqueConstraint(name="ux_cycle_beneficiary", columnNames={"cycleId","beneficiaryUsername"})
@@ -17,7 +19,7 @@ public class Entitlement {
   private Long cycleId;
   private Long programId;
   private String beneficiaryUsername;
-  private Double amount;
+  private Long amountMinor; // see Money
   private String currency;
   private LocalDate validFrom;
   private LocalDate validUntil;
@@ -32,8 +34,14 @@ public class Entitlement {
   public Long getCycleId(){return cycleId;} public void setCycleId(Long cycleId){this.cycleId=cycleId;}
   public Long getProgramId(){return programId;} public void setProgramId(Long programId){this.programId=programId;}
   public String getBeneficiaryUsername(){return beneficiaryUsername;} public void setBeneficiaryUsername(String v){this.beneficiaryUsername=v;}
-  public Double getAmount(){return amount;} public void setAmount(Double v){this.amount=v;}
+  public Long getAmountMinor(){return amountMinor;} public void setAmountMinor(Long v){this.amountMinor=v;}
+  public BigDecimal getAmount(){return Money.toDecimal(amountMinor, currency);}
   public String getCurrency(){return currency;} public void setCurrency(String v){this.currency=v;}
+  /** Sets amount and currency together; throws ArithmeticException if the amount is finer than the currency. */
+  public void setMoney(BigDecimal amount, String currency){
+    this.currency=currency;
+    this.amountMinor=amount==null ? null : Money.toMinor(amount, currency);
+  }
   public LocalDate getValidFrom(){return validFrom;} public void setValidFrom(LocalDate v){this.validFrom=v;}
   public LocalDate getValidUntil(){return validUntil;} public void setValidUntil(LocalDate v){this.validUntil=v;}
   public String getCode(){return code;} public void setCode(String code){this.code=code;}
@@ -0,0 +1,74 @@
+package com.mini.g2p.programcatalog.domain;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact amount as a long count of the currency's minor units (millimes for TND, cents for EUR).
+ * Decimal input converts exactly or fails; sums are plain long additions that fail on overflow.
+ * Same type as payment-service's Money; both services must agree on the minor digits.
+ */
+public record Money(long minor, String currency) {
+
+  private static final Map<String, Integer> DIGITS = new ConcurrentHashMap<>();
+
+  public Money {
+    currency = normalize(currency);
+  }
+
+  public static Money ofMinor(long minor, String currency) { return new Money(minor, currency); }
+
+  /** Exact conversion; throws ArithmeticException when the amount has more decimals than the currency. */
+  public static Money of(BigDecimal amount, String currency) { return new Money(toMinor(amount, currency), currency); }
+
+  public static long toMinor(BigDecimal amount, String currency) {
+    return amount.movePointRight(fractionDigits(currency)).longValueExact();
+  }
+
+  /** For legacy double-derived amounts only: rounds half-even to the currency's precision. */
+  public static long toMinorRounded(BigDecimal amount, String currency) {
+    return amount.setScale(fractionDigits(currency), RoundingMode.HALF_EVEN).unscaledValue().longValueExact();
+  }
+
+  /** Minor units of a legacy double precision amount: its shortest decimal form, rounded as toMinorRounded. */
+  public static long legacyMinor(double amount, String currency) {
+    return toMinorRounded(BigDecimal.valueOf(amount), currency);
+  }
+
+  public static BigDecimal toDecimal(Long minor, String currency) {
+    return minor == null ? null : BigDecimal.valueOf(minor, fractionDigits(currency));
+  }
+
+  /** ISO 4217 minor digits (TND = 3, EUR = 2, JPY = 0); 2 for unknown or missing codes. */
+  public static int fractionDigits(String currency) {
+    String c = normalize(currency);
+    if (c == null) return 2;
+    return DIGITS.computeIfAbsent(c, k -> {
+      try {
+        return Math.max(0, Currency.getInstance(k).getDefaultFractionDigits());
+      } catch (IllegalArgumentException e) {
+        return 2;
+      }
+    });
+  }
+
+  public BigDecimal toBigDecimal() { return BigDecimal.valueOf(minor, fractionDigits(currency)); }
+
+  public Money plus(Money other) {
+    if (!Objects.equals(currency, other.currency)) {
+      throw new IllegalArgumentException("currency mismatch: " + currency + " vs " + other.currency);
+    }
+    return new Money(Math.addExact(minor, other.minor), currency);
+  }
+
+  @Override public String toString() { return toBigDecimal().toPlainString() + (currency == null ? "" : " " + currency); }
+
+  private static String normalize(String currency) {
+    if (currency == null || currency.isBlank()) return null;
+    return currency.trim().toUpperCase();
+  }
+}
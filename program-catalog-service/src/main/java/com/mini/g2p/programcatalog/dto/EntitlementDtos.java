@@ -1,11 +1,20 @@
 package com.mini.g2p.programcatalog.dto;
 
+import com.mini.g2p.programcatalog.domain.Money;
+
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
 
 public class EntitlementDtos {
-  public record Item(String username, Double amount, String currency, LocalDate validFrom, LocalDate validUntil) {}
+  public record Item(String username, BigDecimal amount, String currency, LocalDate validFrom, LocalDate validUntil) {}
   public record GenerateReq(List<Item> items) {}
-  // Light view for internal calls (PaymentService)
-  public record ApprovedEntitlement(Long id, String username, Double amount, String currency) {}
+  // Light view for internal calls (PaymentService); amount is the decimal view of amountMinor
+  public record ApprovedEntitlement(Long id, String username, BigDecimal amount, String currency, Long amountMinor) {
+    public ApprovedEntitlement(Long id, String username, Long amountMinor, String currency) {
+      this(id, username, Money.toDecimal(amountMinor, currency), currency, amountMinor);
+    }
+  }
+  // Keyset page of approved entitlements; nextAfterId is null on the last page
+  public record ApprovedEntitlementPage(List<ApprovedEntitlement> items, Long nextAfterId) {}
 }
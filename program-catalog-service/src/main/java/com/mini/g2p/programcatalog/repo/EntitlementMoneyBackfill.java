@@ -0,0 +1,57 @@
+package com.mini.g2p.programcatalog.repo;
+
+import com.mini.g2p.programcatalog.domain.Money;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * One-way migration of entitlements.amount (double precision) to amount_minor, in bounded
+ * chunks per currency at startup, converted with Money.legacyMinor like payment-service's
+ * MoneyBackfill. A no-op once the legacy column has been dropped
+ * (alter table entitlements drop column amount) after no row has a null amount_minor.
+ */
+@Component
+public class EntitlementMoneyBackfill {
+
+  private final JdbcTemplate jdbc;
+  private final boolean enabled;
+  private final int chunkSize;
+
+  public EntitlementMoneyBackfill(JdbcTemplate jdbc,
+                                  @Value("${app.money.backfill.enabled:true}") boolean enabled,
+                                  @Value("${app.money.backfill.chunk-size:5000}") int chunkSize) {
+    this.jdbc = jdbc; this.enabled = enabled; this.chunkSize = chunkSize;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void run() {
+    if (!enabled) return;
+    try {
+      Integer legacy = jdbc.queryForObject("""
+          select count(*) from information_schema.columns
+           where table_schema = current_schema() and table_name = 'entitlements' and column_name = 'amount'
+          """, Integer.class);
+      if (legacy == null || legacy == 0) return;
+
+      var currencies = jdbc.queryForList(
+          "select distinct currency from entitlements where amount_minor is null and amount is not null", String.class);
+      for (String currency : currencies) {
+        String select = "select id, amount from entitlements where amount_minor is null and amount is not null"
+            + " and currency " + (currency == null ? "is null" : "= ?") + " limit " + chunkSize;
+        Object[] args = currency == null ? new Object[0] : new Object[] { currency };
+        List<Object[]> rows;
+        do {
+          rows = jdbc.query(select, (rs, i) -> new Object[] { Money.legacyMinor(rs.getDouble(2), currency), rs.getLong(1) }, args);
+          if (!rows.isEmpty()) jdbc.batchUpdate("update entitlements set amount_minor = ? where id = ?", rows);
+        } while (rows.size() == chunkSize);
+      }
+    } catch (Exception e) {
+      System.err.println("entitlement money backfill failed: " + e.getMessage());
+    }
+  }
+}
@@ -2,10 +2,12 @@ package com.mini.g2p.programcatalog.repo;
 
 import com.mini.g2p.programcatalog.domain.Entitlement;
 import com.mini.g2p.programcatalog.domain.EntitlementState;
+import com.mini.g2p.programcatalog.dto.EntitlementDtos.ApprovedEntitlement;
 
 import jakarta.transaction.Transactional;
 
 import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
@@ -15,6 +17,17 @@ public interface EntitlementRepository extends JpaRepository<Entitlement, Long>
   List<Entitlement> findByCycleIdOrderByIdAsc(Long cycleId);
   List<Entitlement> findByCycleIdAndState(Long cycleId, EntitlementState state);
   long countByCycleId(Long cycleId);
+
+  // keyset page projected straight into the internal DTO (ix_entitlement_cycle_state_id)
+  @Query("""
+      select new com.mini.g2p.programcatalog.dto.EntitlementDtos$ApprovedEntitlement(
+               e.id, e.beneficiaryUsername, e.amountMinor, e.currency)
+        from Entitlement e
+       where e.cycleId = :cycleId and e.state = :state and e.id > :afterId
+       order by e.id
+      """)
+  List<ApprovedEntitlement> findPage(@Param("cycleId") Long cycleId, @Param("state") EntitlementState state,
+                                     @Param("afterId") Long afterId, Limit limit);
   long countByCycleIdAndState(Long cycleId, EntitlementState state);
   @Transactional
   @Modifying